@@ -0,0 +1,307 @@
+package io.github.yfwz100.tictactoe.android;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.yfwz100.tictactoe.Agent;
+import io.github.yfwz100.tictactoe.Board;
+import io.github.yfwz100.tictactoe.CancellationToken;
+import io.github.yfwz100.tictactoe.Ponderer;
+import io.github.yfwz100.tictactoe.SearchLimits;
+import io.github.yfwz100.tictactoe.SearchListener;
+
+/**
+ * Runs the game on one background thread. The commands of the activity are queued on the thread,
+ * and a turn, i.e. the move of the player, the reply of the agent and the status after them, is
+ * played in one step and published to the main thread as one {@link Update}.
+ * <p>
+ * Each new game starts a new generation. The commands and the updates of the former generations
+ * are dropped, and the search of the former game is cancelled, so nothing of an old game reaches
+ * the new one.
+ * <p>
+ * The agent is taken from the warm-up of the {@link TicTacToeApplication}, waited for on the
+ * engine thread, so the main thread never blocks on it. If the warm-up fails, the agent is
+ * taken on the engine thread instead.
+ *
+ * @author yfwz100
+ */
+public class EngineWorker {
+
+    private static final String TAG = "EngineWorker";
+
+    /**
+     * Listens to the updates of the game, on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called when a command is done.
+         *
+         * @param update the update of the game.
+         */
+        void onGameUpdated(Update update);
+    }
+
+    /**
+     * The game after a command: a copy of the board, its status and the reply of the agent.
+     */
+    public static class Update {
+        private final int generation;
+        private final Board board;
+        private final Board.Status status;
+        private final Agent.Choice choice;
+        private final long latencyNanos;
+
+        Update(int generation, Board board, Board.Status status, Agent.Choice choice,
+               long latencyNanos) {
+            this.generation = generation;
+            this.board = board;
+            this.status = status;
+            this.choice = choice;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Get the copy of the board, owned by the receiver.
+         *
+         * @return the board.
+         */
+        public Board getBoard() {
+            return board;
+        }
+
+        public Board.Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Get the reply of the agent.
+         *
+         * @return the choice, or null if the agent hasn't moved.
+         */
+        public Agent.Choice getChoice() {
+            return choice;
+        }
+
+        /**
+         * Get the time from the command queued to the update delivered on the main thread.
+         *
+         * @return the latency in nanoseconds.
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+
+    private final SearchLimits limits;
+    private final SearchListener searchListener;
+    private final Listener listener;
+
+    /**
+     * The agent and its ponderer, set on the engine thread once the agent is warmed up.
+     */
+    private Agent agent;
+    private Ponderer ponderer;
+
+    private final HandlerThread thread = new HandlerThread("engine");
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile CancellationToken token = new CancellationToken();
+
+    /**
+     * The board of the game, only modified on the engine thread.
+     */
+    private volatile Board board = new Board();
+
+    /**
+     * Construct the worker and start its thread.
+     *
+     * @param warmUp         the agent being warmed up.
+     * @param limits         the limits of the search of the agent per move.
+     * @param searchListener the listener of the searches, added to the agent until it quits.
+     * @param listener       the listener of the updates.
+     */
+    public EngineWorker(final Future<Agent> warmUp, SearchLimits limits,
+                        final SearchListener searchListener, Listener listener) {
+        this.limits = limits;
+        this.searchListener = searchListener;
+        this.listener = listener;
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        // The first command, so the others wait for the warm-up.
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    agent = warmUp.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // Don't throw on the looper, which would kill the process, but play cold.
+                    // The interrupt isn't kept, or the pondered answers couldn't be waited for.
+                    Log.w(TAG, "Failed to warm up, loading the agent on the engine thread", e);
+                    agent = Agent.getInstance();
+                }
+                agent.addSearchListener(searchListener);
+                ponderer = new Ponderer(agent);
+            }
+        });
+    }
+
+    /**
+     * Start a new game, dropping the commands of the former one.
+     *
+     * @param agentFirst whether the agent moves first.
+     */
+    public void newGame(final boolean agentFirst) {
+        final long queued = System.nanoTime();
+        final int current = generation.incrementAndGet();
+        token.cancel();
+        final CancellationToken token = new CancellationToken();
+        this.token = token;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                ponderer.stop();
+                board = new Board();
+                Agent.Choice choice = agentFirst ? reply(token) : null;
+                publish(current, choice, queued);
+            }
+        });
+    }
+
+    /**
+     * Continue a saved game, dropping the commands of the former one. The agent replies if it's
+     * to move, and otherwise nothing is searched.
+     *
+     * @param saved       the board of the game, copied before it returns.
+     * @param agentToMove whether the agent is to move.
+     */
+    public void restoreGame(Board saved, final boolean agentToMove) {
+        final long queued = System.nanoTime();
+        final int current = generation.incrementAndGet();
+        final Board restored = saved.clone();
+        token.cancel();
+        final CancellationToken token = new CancellationToken();
+        this.token = token;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                ponderer.stop();
+                board = restored;
+                Agent.Choice choice = null;
+                if (agentToMove && board.getStatus() == Board.Status.RUNNING) {
+                    choice = reply(token);
+                }
+                publish(current, choice, queued);
+            }
+        });
+    }
+
+    /**
+     * Play the move of the player and the reply of the agent.
+     *
+     * @param x the row of the move.
+     * @param y the column of the move.
+     */
+    public void play(final int x, final int y) {
+        final long queued = System.nanoTime();
+        final int current = generation.get();
+        final CancellationToken token = this.token;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (current != generation.get() || board.get(x, y) != Board.Mark.NA) {
+                    return;
+                }
+                board.place(x, y, Board.Mark.A);
+                Agent.Choice choice = null;
+                if (board.getStatus() == Board.Status.RUNNING) {
+                    choice = reply(token);
+                }
+                publish(current, choice, queued);
+            }
+        });
+    }
+
+    /**
+     * Check if the board is the one of the game, e.g. to tell the searches of the moves from the
+     * pondering ones.
+     *
+     * @param other the board.
+     * @return true if it's the board of the game.
+     */
+    public boolean isGameBoard(Board other) {
+        return other == board;
+    }
+
+    /**
+     * Cancel the search and stop the thread once the queued commands are dropped. The worker
+     * can't be used after that.
+     */
+    public void quit() {
+        generation.incrementAndGet();
+        token.cancel();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                agent.removeSearchListener(searchListener);
+                ponderer.shutdown();
+                thread.quit();
+            }
+        });
+    }
+
+    /**
+     * Search and place the reply of the agent, and start pondering the answers to the player.
+     *
+     * @param token the token of the game.
+     * @return the choice, or null if there's none or the game is dropped.
+     */
+    private Agent.Choice reply(CancellationToken token) {
+        // The answer pondered during the player's turn is ready or already warm, and a new game
+        // stops waiting for it.
+        Agent.Choice choice = ponderer.take(board, Board.Mark.B, token);
+        if (choice == null && !token.isCancelled()) {
+            choice = agent.getBestChoice(board, Board.Mark.B, limits, token);
+        }
+        if (choice == null || token.isCancelled()) {
+            return null;
+        }
+        board.place(choice.getX(), choice.getY(), Board.Mark.B);
+        ponderer.start(board, Board.Mark.A, limits);
+        return choice;
+    }
+
+    /**
+     * Publish the board to the main thread, unless a new game has started.
+     */
+    private void publish(final int current, final Agent.Choice choice, final long queued) {
+        if (current != generation.get()) {
+            return;
+        }
+        final Board copy = board.clone();
+        final Board.Status status = board.getStatus();
+        if (status != Board.Status.RUNNING) {
+            ponderer.stop();
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (current == generation.get()) {
+                    listener.onGameUpdated(new Update(current, copy, status, choice,
+                            System.nanoTime() - queued));
+                }
+            }
+        });
+    }
+}
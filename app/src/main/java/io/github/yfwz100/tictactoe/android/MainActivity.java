@@ -2,9 +2,12 @@ package io.github.yfwz100.tictactoe.android;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -14,47 +17,231 @@ import android.widget.Toast;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import io.github.yfwz100.tictactoe.Agent;
+import io.github.yfwz100.tictactoe.AnalysisListener;
 import io.github.yfwz100.tictactoe.Board;
+import io.github.yfwz100.tictactoe.CancellationToken;
+import io.github.yfwz100.tictactoe.PositionCodec;
 import io.github.yfwz100.tictactoe.R;
+import io.github.yfwz100.tictactoe.SearchLimits;
+import io.github.yfwz100.tictactoe.SearchListener;
+import io.github.yfwz100.tictactoe.SearchStatistics;
 
 /**
  * The main activity of the TicTacToe game.
  *
  * @author yfwz100
  */
-public class MainActivity extends AppCompatActivity implements Board.BoardCellChangeListener {
+public class MainActivity extends AppCompatActivity implements EngineWorker.Listener {
 
-    private final Agent agent = Agent.getInstance();
+    private static final String TAG = "MainActivity";
+
+    /**
+     * The keys of the game saved in the instance state.
+     */
+    private static final String STATE_BOARD = "board";
+    private static final String STATE_AGENT_FIRST = "agentFirst";
+    private static final String STATE_FIRST_PLAYER = "firstPlayer";
+    private static final String STATE_SHOW_HINTS = "showHints";
+
+    /**
+     * The plies the agent searches, i.e. the difficulty.
+     */
+    private static final int AGENT_DEPTH = 1;
+
+    /**
+     * The time budget of the agent per move.
+     */
+    private static final long AGENT_TIME_MILLIS = 1000;
+
+    /**
+     * The time budget of the analysis behind the hints.
+     */
+    private static final long HINT_TIME_MILLIS = 2000;
+
+    /**
+     * The colors of the hints for the winning, drawing and losing moves.
+     */
+    private static final int HINT_WIN_COLOR = Color.rgb(165, 214, 167);
+    private static final int HINT_DRAW_COLOR = Color.rgb(255, 245, 157);
+    private static final int HINT_LOSS_COLOR = Color.rgb(239, 154, 154);
+
+    /**
+     * The agent warmed up by the application, only waited for off the main thread.
+     */
+    private Future<Agent> agent;
 
     private final Button[] cellButtons = new Button[9];
     private TextView messageText;
 
+    /**
+     * The debug overlay of the statistics of the last search of the agent.
+     */
+    private TextView statisticsText;
+    private volatile boolean showStatistics = false;
+
+    private final SearchListener searchListener = new SearchListener() {
+        @Override
+        public void onSearchFinished(Board searched, Board.Mark mark, Agent.Choice choice,
+                                     SearchStatistics statistics) {
+            if (!showStatistics || mark != Board.Mark.B) {
+                return;
+            }
+            // The searches on the other boards are the pondering ones.
+            int kind = engine.isGameBoard(searched) ? R.string.statistics_move
+                    : R.string.statistics_ponder;
+            final String text = getString(R.string.statistics_text, getString(kind),
+                    statistics.getDepth(), statistics.getNodes(), statistics.getEvaluations(),
+                    statistics.getCutoffs(), statistics.getTableHits(),
+                    statistics.getPerfectPlayHits(), statistics.getBoardCopies(),
+                    statistics.getNanos() / 1e6, statistics.getNodesPerSecond());
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    statisticsText.setText(text);
+                }
+            });
+        }
+    };
+
+    /**
+     * Plays the turns of the game on the engine thread.
+     */
+    private EngineWorker engine;
+
+    /**
+     * The board last published by the engine, with the move of the player not yet answered.
+     */
     private Board board;
 
     private int firstPlayer = 0;
 
+    /**
+     * Whether the agent moved first in the current game.
+     */
+    private boolean agentFirst = false;
+
+    /**
+     * Whether a turn is being played by the engine.
+     */
+    private boolean thinking = false;
+
+    /**
+     * Whether the moves of the player are shown as a heatmap on the cells.
+     */
+    private boolean showHints = false;
+
+    private AnalysisTask analysisTask;
+
     /**
      * Initialized the game. It will reset all the status of the game.
      */
     public void initGame() {
+        cancelAnalysis();
+
         board = new Board();
-        board.addCellNotifier(this);
+        showBoard();
 
-        for (Button btn : cellButtons) {
-            btn.setText(R.string.empty_text);
-        }
+        messageText.setText(R.string.welcome_text);
 
-        enableBoardCells();
+        // The turns of the former game, if any, are dropped by the engine.
+        agentFirst = firstPlayer == 1;
+        thinking = true;
+        disableBoardCells();
+        engine.newGame(agentFirst);
+    }
 
-        messageText.setText(R.string.welcome_text);
+    /**
+     * Continue the game saved in the instance state, without searching again unless the agent
+     * was to move.
+     *
+     * @param state the saved state.
+     */
+    protected void restoreGame(Bundle state) {
+        board = new Board();
+        PositionCodec.decode(state.getByteArray(STATE_BOARD), 0, board);
+        agentFirst = state.getBoolean(STATE_AGENT_FIRST);
+        firstPlayer = state.getInt(STATE_FIRST_PLAYER);
+        showHints = state.getBoolean(STATE_SHOW_HINTS);
+        showBoard();
+
+        thinking = true;
+        disableBoardCells();
+        engine.restoreGame(board, isAgentToMove());
+    }
+
+    /**
+     * Check if the agent is to move on the board, by the moves made and who moved first.
+     *
+     * @return true if it's the turn of the agent.
+     */
+    protected boolean isAgentToMove() {
+        boolean evenMoves = board.getEmptyCount() % 2 == 1;
+        return evenMoves == agentFirst;
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle state) {
+        super.onSaveInstanceState(state);
+        byte[] cells = new byte[PositionCodec.getEncodedLength(board.getGeometry())];
+        PositionCodec.encode(board, cells, 0);
+        state.putByteArray(STATE_BOARD, cells);
+        state.putBoolean(STATE_AGENT_FIRST, agentFirst);
+        state.putInt(STATE_FIRST_PLAYER, firstPlayer);
+        state.putBoolean(STATE_SHOW_HINTS, showHints);
+    }
+
+    /**
+     * Show the marks of the board on the cell buttons.
+     */
+    protected void showBoard() {
+        for (int i = 0; i < cellButtons.length; i++) {
+            Board.Mark mark = board.get(i / 3, i % 3);
+            if (mark == Board.Mark.NA) {
+                cellButtons[i].setText(R.string.empty_text);
+            } else {
+                cellButtons[i].setText(mark == Board.Mark.A ? R.string.cell_a_check
+                        : R.string.cell_b_check);
+            }
+        }
+    }
+
+    /**
+     * Start the analysis of the moves of the player, if the hints are shown.
+     */
+    protected void startAnalysis() {
+        cancelAnalysis();
+        if (showHints) {
+            analysisTask = new AnalysisTask();
+            analysisTask.execute();
+        }
+    }
 
-        if (firstPlayer == 1) {
-            new AgentChoiceTask().execute();
+    /**
+     * Stop the running analysis, if any, and clear the hints.
+     */
+    protected void cancelAnalysis() {
+        if (analysisTask != null) {
+            analysisTask.abort();
+            analysisTask = null;
+        }
+        for (Button btn : cellButtons) {
+            btn.getBackground().clearColorFilter();
         }
     }
 
+    /**
+     * Get the limits of the search of the agent per move.
+     *
+     * @return the limits.
+     */
+    protected SearchLimits getAgentLimits() {
+        return new SearchLimits(AGENT_DEPTH, AGENT_TIME_MILLIS, 0);
+    }
+
     /**
      * Enable the cell buttons. The non-empty cell is ignored and remain unchanged.
      */
@@ -76,77 +263,116 @@ public class MainActivity extends AppCompatActivity implements Board.BoardCellCh
     }
 
     /**
-     * The task to get the status of the game.
+     * The task to analyse the moves of the player, showing the scores on the cells as they come.
      */
-    protected class GameStatusTask extends AsyncTask<Void, Integer, Board.Status> {
+    protected class AnalysisTask extends AsyncTask<Void, Agent.Choice, Agent.Choice[]> {
+
+        /**
+         * A copy of the board, as the player may move while it's analysed.
+         */
+        private final Board board = new Board();
+        private final CancellationToken token = new CancellationToken();
+
+        public AnalysisTask() {
+            board.copyFrom(MainActivity.this.board);
+        }
+
+        /**
+         * Stop the analysis as soon as possible and discard the scores.
+         */
+        public void abort() {
+            token.cancel();
+            cancel(false);
+        }
 
         @Override
-        protected void onPreExecute() {
-            disableBoardCells();
+        protected Agent.Choice[] doInBackground(Void... params) {
+            Agent agent;
+            try {
+                agent = MainActivity.this.agent.get();
+            } catch (InterruptedException | ExecutionException e) {
+                return null;
+            }
+            return agent.analyze(board, Board.Mark.A, new SearchLimits(0, HINT_TIME_MILLIS, 0),
+                    token, new AnalysisListener() {
+                        @Override
+                        public void onMoveAnalyzed(Agent.Choice choice, int depth) {
+                            publishProgress(choice);
+                        }
+                    });
         }
 
         @Override
-        protected Board.Status doInBackground(Void... params) {
-            return board.getStatus();
+        protected void onProgressUpdate(Agent.Choice... choices) {
+            if (isCancelled()) {
+                return;
+            }
+            for (Agent.Choice choice : choices) {
+                showHint(choice);
+            }
         }
 
         @Override
-        protected void onPostExecute(Board.Status status) {
-            switch (status) {
-                case A_WIN: {
-                    messageText.setText(R.string.player_win_text);
-                    disableBoardCells();
-                    break;
-                }
-                case B_WIN: {
-                    messageText.setText(R.string.computer_win_text);
-                    disableBoardCells();
-                    break;
-                }
-                case END: {
-                    messageText.setText(R.string.none_win_text);
-                    disableBoardCells();
-                    break;
-                }
-                default:
-                    onGameContinues();
-                    enableBoardCells();
+        protected void onPostExecute(Agent.Choice[] analysis) {
+            if (analysisTask == this) {
+                analysisTask = null;
             }
         }
 
         /**
-         * Override this method to do something after checking the game is running.
+         * Tint the cell of the move by its score: green to win, red to lose and yellow otherwise.
          */
-        protected void onGameContinues() {
+        private void showHint(Agent.Choice choice) {
+            int color;
+            if (choice.getUtility() > Agent.WIN_SCORE / 2) {
+                color = HINT_WIN_COLOR;
+            } else if (choice.getUtility() < -Agent.WIN_SCORE / 2) {
+                color = HINT_LOSS_COLOR;
+            } else {
+                color = HINT_DRAW_COLOR;
+            }
+            cellButtons[choice.getX() * 3 + choice.getY()].getBackground()
+                    .setColorFilter(color, PorterDuff.Mode.MULTIPLY);
         }
     }
 
     /**
-     * The task for agent to make a choice.
+     * Show the board published by the engine, all the cells and the status at once.
+     *
+     * @param update the update of the game.
      */
-    protected class AgentChoiceTask extends AsyncTask<Void, Integer, Agent.Choice> {
-
-        @Override
-        protected Agent.Choice doInBackground(Void... params) {
-            return agent.getBestChoice(board, Board.Mark.B);
-        }
-
-        @Override
-        protected void onPreExecute() {
-            disableBoardCells();
+    @Override
+    public void onGameUpdated(EngineWorker.Update update) {
+        Log.d(TAG, String.format("Turn latency: %.1f ms", update.getLatencyNanos() / 1e6));
+        thinking = false;
+        if (update.getChoice() != null) {
+            ((TicTacToeApplication) getApplication()).onAgentMoved();
         }
-
-        @Override
-        protected void onPostExecute(Agent.Choice choice) {
-            if (choice != null) {
-                board.place(choice.getX(), choice.getY(), Board.Mark.B);
-            } else {
-                Toast.makeText(getApplicationContext(), R.string.no_choices_info, Toast.LENGTH_LONG).show();
+        board = update.getBoard();
+        showBoard();
+        switch (update.getStatus()) {
+            case A_WIN: {
+                messageText.setText(R.string.player_win_text);
+                disableBoardCells();
+                break;
             }
-
-            enableBoardCells();
-
-            new GameStatusTask().execute();
+            case B_WIN: {
+                messageText.setText(R.string.computer_win_text);
+                disableBoardCells();
+                break;
+            }
+            case END: {
+                messageText.setText(R.string.none_win_text);
+                disableBoardCells();
+                break;
+            }
+            default:
+                if (isAgentToMove()) {
+                    Toast.makeText(getApplicationContext(), R.string.no_choices_info,
+                            Toast.LENGTH_LONG).show();
+                }
+                enableBoardCells();
+                startAnalysis();
         }
     }
 
@@ -163,14 +389,13 @@ public class MainActivity extends AppCompatActivity implements Board.BoardCellCh
                 for (int i = 0; i < cellButtons.length; i++) {
                     if (btn == cellButtons[i]) {
                         int x = i / 3, y = i % 3;
+                        cancelAnalysis();
                         board.place(x, y, Board.Mark.A);
+                        btn.setText(R.string.cell_a_check);
 
-                        new GameStatusTask() {
-                            @Override
-                            protected void onGameContinues() {
-                                new AgentChoiceTask().execute();
-                            }
-                        }.execute();
+                        thinking = true;
+                        disableBoardCells();
+                        engine.play(x, y);
 
                         break;
                     }
@@ -189,14 +414,29 @@ public class MainActivity extends AppCompatActivity implements Board.BoardCellCh
         btnList.toArray(this.cellButtons);
 
         messageText = ((TextView) findViewById(R.id.message));
+        statisticsText = ((TextView) findViewById(R.id.statistics));
+        agent = ((TicTacToeApplication) getApplication()).getAgent();
+        engine = new EngineWorker(agent, getAgentLimits(), searchListener, this);
+
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_BOARD)) {
+            restoreGame(savedInstanceState);
+        } else {
+            initGame();
+        }
+    }
 
-        initGame();
+    @Override
+    protected void onDestroy() {
+        engine.quit();
+        cancelAnalysis();
+        super.onDestroy();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_hints).setChecked(showHints);
         return true;
     }
 
@@ -231,6 +471,22 @@ public class MainActivity extends AppCompatActivity implements Board.BoardCellCh
                 builder.create().show();
                 break;
             }
+            case R.id.action_statistics: {
+                showStatistics = !item.isChecked();
+                item.setChecked(showStatistics);
+                statisticsText.setVisibility(showStatistics ? View.VISIBLE : View.GONE);
+                break;
+            }
+            case R.id.action_hints: {
+                showHints = !item.isChecked();
+                item.setChecked(showHints);
+                if (showHints && !thinking && board.getStatus() == Board.Status.RUNNING) {
+                    startAnalysis();
+                } else if (!showHints) {
+                    cancelAnalysis();
+                }
+                break;
+            }
             case R.id.action_new: {
                 initGame();
                 break;
@@ -239,16 +495,4 @@ public class MainActivity extends AppCompatActivity implements Board.BoardCellCh
 
         return super.onOptionsItemSelected(item);
     }
-
-    @Override
-    public void notifyChanged(final int x, final int y, final Board.Mark mark) {
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                Button btn = cellButtons[x * 3 + y];
-                btn.setText(mark == Board.Mark.A ? R.string.cell_a_check : R.string.cell_b_check);
-                btn.setEnabled(false);
-            }
-        });
-    }
 }
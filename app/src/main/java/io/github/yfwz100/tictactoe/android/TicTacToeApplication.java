@@ -0,0 +1,64 @@
+package io.github.yfwz100.tictactoe.android;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import io.github.yfwz100.tictactoe.Agent;
+
+/**
+ * The application of the TicTacToe game. It warms the engine up on a background thread as the
+ * process starts: the agent loads its perfect play table, so the main thread never waits for it.
+ * The searches of the agent are too shallow to be worth caching.
+ *
+ * @author yfwz100
+ */
+public class TicTacToeApplication extends Application {
+
+    private static final String TAG = "TicTacToeApplication";
+
+    private long startNanos;
+    private boolean agentMoved = false;
+
+    private FutureTask<Agent> warmUp;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        startNanos = System.nanoTime();
+        warmUp = new FutureTask<>(new Callable<Agent>() {
+            @Override
+            public Agent call() {
+                long start = System.nanoTime();
+                Agent agent = Agent.getInstance();
+                Log.d(TAG, String.format("Loaded the agent in %.1f ms",
+                        (System.nanoTime() - start) / 1e6));
+                return agent;
+            }
+        });
+        new Thread(warmUp, "warm-up").start();
+    }
+
+    /**
+     * Get the agent being warmed up. It must not be waited for on the main thread.
+     *
+     * @return the future of the agent.
+     */
+    public Future<Agent> getAgent() {
+        return warmUp;
+    }
+
+    /**
+     * Record the move of the agent, logging the time to the first one since the process started.
+     */
+    public void onAgentMoved() {
+        if (!agentMoved) {
+            agentMoved = true;
+            Log.d(TAG, String.format("First move of the agent in %.1f ms since the start",
+                    (System.nanoTime() - startNanos) / 1e6));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.yfwz100.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmarks of the heuristics and the search. The perfect play table is disabled, and the
+ * transposition table is cleared before every search, so the search is measured cold.
+ *
+ * @author yfwz100
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AgentBenchmark {
+
+    @Param({"3x3x3", "7x7x4", "15x15x5"})
+    public String geometry;
+
+    private final Agent agent = Agent.getInstance();
+    private PerfectPlayTable perfectPlayTable;
+    private Board board;
+
+    /**
+     * The depth of the search.
+     */
+    @State(Scope.Thread)
+    public static class Search {
+
+        @Param({"1", "2", "3"})
+        public int depth;
+
+        @Setup(Level.Invocation)
+        public void clearTable() {
+            Agent.getInstance().getTranspositionTable().clear();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        BoardGeometry parsed = Positions.parse(geometry);
+        board = Positions.midGame(parsed, parsed.getCells() / 3);
+        perfectPlayTable = agent.getPerfectPlayTable();
+        agent.setPerfectPlayTable(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        agent.setPerfectPlayTable(perfectPlayTable);
+    }
+
+    @Benchmark
+    public int getChancesToWin() {
+        return agent.getChancesToWin(board, Board.Mark.A);
+    }
+
+    @Benchmark
+    public int getMinimumStepsToWin() {
+        return agent.getMinimumStepsToWin(board, Board.Mark.A);
+    }
+
+    @Benchmark
+    public Agent.Choice getBestChoice(Search search) {
+        return agent.getBestChoice(board, Board.Mark.A, search.depth);
+    }
+}
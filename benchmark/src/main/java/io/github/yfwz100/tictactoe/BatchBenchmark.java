@@ -0,0 +1,79 @@
+package io.github.yfwz100.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmarks of the batches of 3x3 positions against calling the agent once per position.
+ * The throughput is counted in positions.
+ *
+ * @author yfwz100
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchBenchmark {
+
+    private static final int BATCH = 10000;
+
+    @Param({"1", "9"})
+    public int depth;
+
+    private final Agent agent = Agent.getInstance();
+    private final Board[] boards = new Board[BATCH];
+    private final Board.Mark[] marks = new Board.Mark[BATCH];
+    private final int[] positions = new int[BATCH];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int[] moves = new int[PackedPosition.CELLS];
+        for (int p = 0; p < BATCH; p++) {
+            Board board = new Board();
+            Board.Mark mark = Board.Mark.A;
+            for (int ply = random.nextInt(8); ply > 0; ply--) {
+                int count = board.getEmptyCells(moves);
+                board.makeMove(moves[random.nextInt(count)], mark);
+                if (board.getStatus() != Board.Status.RUNNING) {
+                    board.unmakeMove();
+                    break;
+                }
+                mark = mark.getOpponent();
+            }
+            boards[p] = board;
+            marks[p] = mark;
+            positions[p] = PackedPosition.pack(board, mark);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void getBestChoiceLoop(Blackhole blackhole) {
+        for (int p = 0; p < BATCH; p++) {
+            blackhole.consume(agent.getBestChoice(boards[p], marks[p], depth));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Agent.Choice[] getBestChoices() {
+        return agent.getBestChoices(boards, marks, depth);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int[] getBestMoves() {
+        return agent.getBestMoves(positions, depth);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.yfwz100.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmarks of the board operations.
+ *
+ * @author yfwz100
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BoardBenchmark {
+
+    @Param({"3x3x3", "7x7x4", "15x15x5"})
+    public String geometry;
+
+    private Board board;
+    private int[] moves;
+    private int move;
+
+    @Setup
+    public void setUp() {
+        BoardGeometry parsed = Positions.parse(geometry);
+        board = Positions.midGame(parsed, parsed.getCells() / 3);
+        moves = new int[parsed.getCells()];
+        board.getEmptyCells(moves);
+        move = moves[0];
+    }
+
+    @Benchmark
+    public Board.Status getStatus() {
+        return board.getStatus();
+    }
+
+    @Benchmark
+    public Board cloneBoard() {
+        return board.clone();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Board.BoardCell cell : board) {
+            blackhole.consume(cell);
+        }
+    }
+
+    @Benchmark
+    public int getEmptyCells() {
+        return board.getEmptyCells(moves);
+    }
+
+    @Benchmark
+    public long makeAndUnmakeMove() {
+        board.makeMove(move, Board.Mark.A);
+        long hash = board.getHash();
+        board.unmakeMove();
+        return hash;
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.yfwz100.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmark of the Monte Carlo tree search, counted in playouts. The tree is dropped before
+ * every search, so it always grows from the root.
+ *
+ * @author yfwz100
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MonteCarloBenchmark {
+
+    private static final int ITERATIONS = 10000;
+
+    @Param({"3x3x3", "7x7x4", "15x15x5"})
+    public String geometry;
+
+    private final MonteCarloAgent agent = new MonteCarloAgent();
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        BoardGeometry parsed = Positions.parse(geometry);
+        board = Positions.midGame(parsed, parsed.getCells() / 3);
+        agent.setSeed(42);
+        agent.setIterations(ITERATIONS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public Agent.Choice getBestChoice() {
+        // a placed move drops the tree, as the agent doesn't follow this board.
+        agent.notifyChanged(0, 0, Board.Mark.NA);
+        return agent.getBestChoice(board, Board.Mark.A);
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.yfwz100.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The speedup of the root-split search by the number of threads on the larger boards.
+ *
+ * @author yfwz100
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParallelSearchBenchmark {
+
+    @Param({"7x7x4", "15x15x5"})
+    public String geometry;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"3"})
+    public int depth;
+
+    private final Agent agent = Agent.getInstance();
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        BoardGeometry parsed = Positions.parse(geometry);
+        board = Positions.midGame(parsed, parsed.getCells() / 3);
+        agent.setParallelism(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        agent.getTranspositionTable().clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        agent.setParallelism(1);
+    }
+
+    @Benchmark
+    public Agent.Choice getBestChoice() {
+        return agent.getBestChoice(board, Board.Mark.A, depth);
+    }
+}
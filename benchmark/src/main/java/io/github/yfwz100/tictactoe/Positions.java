@@ -0,0 +1,56 @@
+package io.github.yfwz100.tictactoe;
+
+import java.util.Random;
+
+/**
+ * The positions shared by the benchmarks.
+ *
+ * @author yfwz100
+ */
+final class Positions {
+
+    private Positions() {
+        // utility class.
+    }
+
+    /**
+     * Parse the geometry in the form of {@code <width>x<height>x<win length>}.
+     *
+     * @param geometry the geometry, e.g. "15x15x5".
+     * @return the geometry.
+     */
+    static BoardGeometry parse(String geometry) {
+        String[] parts = geometry.split("x");
+        return BoardGeometry.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]));
+    }
+
+    /**
+     * Play random moves from the empty board, keeping the game running. The seed is fixed so that
+     * every run measures the same position.
+     *
+     * @param geometry the geometry.
+     * @param moves    the number of moves to play.
+     * @return the board, with A to move.
+     */
+    static Board midGame(BoardGeometry geometry, int moves) {
+        Random random = new Random(42);
+        Board board = new Board(geometry);
+        Board.Mark mark = Board.Mark.A;
+        int[] empty = new int[geometry.getCells()];
+        for (int played = 0; played < moves; ) {
+            int count = board.getEmptyCells(empty);
+            int i = empty[random.nextInt(count)];
+            board.makeMove(i, mark);
+            if (board.getStatus() != Board.Status.RUNNING) {
+                board.unmakeMove();
+                continue;
+            }
+            mark = mark.getOpponent();
+            played += 1;
+        }
+        Board result = new Board(geometry);
+        result.copyFrom(board);
+        return result;
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.yfwz100.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of a turn of the app, from the click of the player to the board shown with the
+ * reply, on the JVM. The main thread and the background threads of Android are modelled by
+ * single-thread executors: the chained tasks hop to the background and back three times per turn,
+ * for the status, the reply and the status again, and the engine worker once.
+ *
+ * @author yfwz100
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TurnPipelineBenchmark {
+
+    private final Agent agent = Agent.getInstance();
+    private final SearchLimits limits = new SearchLimits(1, 1000, 0);
+
+    private ExecutorService main;
+    private ExecutorService background;
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        main = Executors.newSingleThreadExecutor();
+        background = Executors.newSingleThreadExecutor();
+        board = new Board();
+        board.place(1, 1, Board.Mark.A);
+        board.place(0, 0, Board.Mark.B);
+    }
+
+    @TearDown
+    public void tearDown() {
+        main.shutdown();
+        background.shutdown();
+    }
+
+    /**
+     * The status task, the choice task and the status task again, each posting back to the main
+     * thread.
+     */
+    @Benchmark
+    public Board.Status chainedTasks() throws Exception {
+        final Board turn = board.clone();
+        turn.place(2, 2, Board.Mark.A);
+        Board.Status status = hop(new Callable<Board.Status>() {
+            @Override
+            public Board.Status call() {
+                return turn.getStatus();
+            }
+        });
+        if (status != Board.Status.RUNNING) {
+            return status;
+        }
+        Agent.Choice choice = hop(new Callable<Agent.Choice>() {
+            @Override
+            public Agent.Choice call() {
+                return agent.getBestChoice(turn, Board.Mark.B, limits, null);
+            }
+        });
+        turn.place(choice.getX(), choice.getY(), Board.Mark.B);
+        return hop(new Callable<Board.Status>() {
+            @Override
+            public Board.Status call() {
+                return turn.getStatus();
+            }
+        });
+    }
+
+    /**
+     * The move, the reply and the status in one command of the worker, posting back once.
+     */
+    @Benchmark
+    public Board.Status engineWorker() throws Exception {
+        final Board turn = board.clone();
+        return hop(new Callable<Board.Status>() {
+            @Override
+            public Board.Status call() {
+                turn.place(2, 2, Board.Mark.A);
+                if (turn.getStatus() == Board.Status.RUNNING) {
+                    Agent.Choice choice = agent.getBestChoice(turn, Board.Mark.B, limits, null);
+                    turn.place(choice.getX(), choice.getY(), Board.Mark.B);
+                }
+                return turn.getStatus();
+            }
+        });
+    }
+
+    /**
+     * Run the work on the background thread and the result back on the main thread.
+     */
+    private <T> T hop(final Callable<T> work) throws InterruptedException, ExecutionException {
+        final T result = background.submit(work).get();
+        return main.submit(new Callable<T>() {
+            @Override
+            public T call() {
+                return result;
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,1344 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The TicTacToe Model.
+ *
+ * @author Wang Zhi
+ */
+public class Agent {
+
+    /**
+     * The score of a won game. Heuristic scores always stay below it.
+     */
+    public final static int WIN_SCORE = 1 << 30;
+
+    private final static int INFINITY = WIN_SCORE + 1;
+
+    /**
+     * The scores beyond it are won or lost games.
+     */
+    private final static int WIN_BOUND = WIN_SCORE - 1000;
+
+    private final static long SIDE_A = 0x5bd1e9955bd1e995L;
+    private final static long SIDE_B = 0x27d4eb2f165667c5L;
+
+    /**
+     * The minimum length of a range of a batch, below which it's not split across the threads.
+     */
+    private final static int MIN_SPLIT_BATCH = 64;
+
+    /**
+     * The minimum length of a range of a batch to remember the solved positions.
+     */
+    private final static int MIN_MEMO_BATCH = 1024;
+
+    private final static int MEMO_SIZE = 2 * PerfectPlayTable.POSITIONS;
+
+    private final static long SOLVED = 1L << 31;
+
+    private final static Agent agent = new Agent();
+
+    private final TranspositionTable table = new TranspositionTable(1 << 16);
+
+    private volatile PerfectPlayTable perfectPlayTable;
+
+    private volatile EndgameDatabase endgameDatabase;
+
+    private volatile ResultCache resultCache;
+
+    private volatile int threatSearchBudget = 0;
+
+    private final SearchStatistics statistics = new SearchStatistics();
+    private final List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile int parallelism = 1;
+    private volatile ExecutorService executor;
+
+    /**
+     * The search state of each searching thread.
+     */
+    private final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+        @Override
+        protected SearchContext initialValue() {
+            return new SearchContext();
+        }
+    };
+
+    /**
+     * Singleton constructor.
+     *
+     * @see #getInstance()
+     */
+    private Agent() {
+        try {
+            perfectPlayTable = PerfectPlayTable.loadDefault();
+        } catch (IOException e) {
+            // Fall back to the search.
+            perfectPlayTable = null;
+        }
+    }
+
+    public static Agent getInstance() {
+        return agent;
+    }
+
+    /**
+     * Get the transposition table of the search, e.g. to check its hit rate.
+     *
+     * @return the table.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Get the precomputed perfect play.
+     *
+     * @return the table, or null if it's not available.
+     */
+    public PerfectPlayTable getPerfectPlayTable() {
+        return perfectPlayTable;
+    }
+
+    /**
+     * Replace the precomputed perfect play, e.g. by a memory-mapped one.
+     *
+     * @param perfectPlayTable the table, or null to always search.
+     */
+    public void setPerfectPlayTable(PerfectPlayTable perfectPlayTable) {
+        this.perfectPlayTable = perfectPlayTable;
+    }
+
+    /**
+     * Get the solved positions of a small board.
+     *
+     * @return the database, or null if it's not set.
+     */
+    public EndgameDatabase getEndgameDatabase() {
+        return endgameDatabase;
+    }
+
+    /**
+     * Answer the searches as deep as the empty cells of the board of the database from it, like
+     * the {@link PerfectPlayTable} of the 3x3 board.
+     *
+     * @param endgameDatabase the solved database, or null to search.
+     */
+    public void setEndgameDatabase(EndgameDatabase endgameDatabase) {
+        this.endgameDatabase = endgameDatabase;
+    }
+
+    /**
+     * Get the cache of the results in front of the search.
+     *
+     * @return the cache, or null if the results aren't cached.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Put a cache of the results in front of the search, so the repeated and the symmetric
+     * positions are answered without searching. The cache may be shared by the agents.
+     *
+     * @param resultCache the cache, or null to always search.
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public int getThreatSearchBudget() {
+        return threatSearchBudget;
+    }
+
+    /**
+     * Run the {@link ThreatSpaceSearch} before the main search: a forced win by continuous
+     * threats is played right away, and against the one of the opponent, the main search only
+     * searches the moves which stop it. The fixed-depth searches only run it if they don't reach
+     * the end of the game.
+     *
+     * @param nodes the nodes of each threat-space search at most, or 0 to turn it off.
+     */
+    public void setThreatSearchBudget(int nodes) {
+        this.threatSearchBudget = nodes;
+    }
+
+    /**
+     * Get the cumulative statistics of the searches since the start or the last reset.
+     *
+     * @return the copy of the statistics.
+     */
+    public SearchStatistics getStatistics() {
+        return new SearchStatistics(statistics);
+    }
+
+    /**
+     * Reset the cumulative statistics of the searches.
+     */
+    public void resetStatistics() {
+        statistics.clear();
+    }
+
+    /**
+     * Register the listener of the searches.
+     *
+     * @param listener the listener.
+     */
+    public void addSearchListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove the listener of the searches.
+     *
+     * @param listener the listener.
+     */
+    public void removeSearchListener(SearchListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the number of threads to search the root moves.
+     *
+     * @return the number of threads.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the number of threads to search the root moves. The root moves are then split across a
+     * pool of the given size, and the results are the same as the ones of the single thread. The
+     * former pool is shut down; the searches running on it finish their work on their calling
+     * threads.
+     *
+     * @param parallelism the number of threads, 1 to search on the calling thread.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Illegal parallelism " + parallelism);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (parallelism > 1) {
+            final AtomicInteger threads = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "agent-search-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Convert the score relative to the root to the one relative to the node for storing, so the
+     * won and lost games keep their distances when reached from another root.
+     */
+    private static int toTable(int score, int ply) {
+        if (score > WIN_BOUND) {
+            return score + ply;
+        } else if (score < -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Convert the stored score back to the one relative to the root.
+     *
+     * @see #toTable(int, int)
+     */
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_BOUND) {
+            return score - ply;
+        } else if (score < -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Get the chances to win. The larger the more likely.
+     *
+     * @param board the board.
+     * @param mark  the mark of the player.
+     * @return the chances.
+     */
+    protected int getChancesToWin(Board board, Board.Mark mark) {
+        return board.getOpenLineCount(mark);
+    }
+
+    /**
+     * Get the minimum steps to win the game. If it equals to 0 then the game is ended.
+     *
+     * @param board the board.
+     * @param mark  the mark of the player.
+     * @return the minimum steps.
+     */
+    protected int getMinimumStepsToWin(Board board, Board.Mark mark) {
+        return board.getMinimumStepsToWin(mark);
+    }
+
+    /**
+     * Evaluate the board from the view of the player who has just placed a mark. This is the
+     * heuristic used on the leaves of the search. The terms are weighted by the bases large enough
+     * for the geometry, which are 10 on the 3x3 board.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player who has just moved.
+     * @return the utility.
+     */
+    protected int evaluate(Board board, Board.Mark mark) {
+        BoardGeometry geometry = board.getGeometry();
+        int stepBase = Math.max(10, geometry.getWinLength() + 1);
+        int chanceBase = Math.max(10, geometry.getLineCount() + 2);
+        int opponentChances = chanceBase - getChancesToWin(board, mark.getOpponent());
+        int myChances = getChancesToWin(board, mark);
+        int opponentMinSteps = getMinimumStepsToWin(board, mark.getOpponent());
+        int myMinSteps = stepBase - getMinimumStepsToWin(board, mark);
+        return ((myMinSteps * stepBase + opponentMinSteps) * chanceBase + opponentChances) * chanceBase
+                + myChances;
+    }
+
+    /**
+     * Search the board with negamax and alpha-beta pruning. The score is from the view of the
+     * player to move. A won game scores {@link #WIN_SCORE} minus the plies from the root, so the
+     * faster win is preferred.
+     * <p>
+     * The results are shared through the transposition table by the canonical hash, so the
+     * symmetric positions are searched only once. The depth is capped by the empty cells, and an
+     * entry is only used by a search of the same depth, so the table never changes the result of
+     * a fixed-depth search.
+     *
+     * @param context the search context holding the board, restored before returning.
+     * @param mark    the mark of the player to move.
+     * @param depth   the remaining plies to search.
+     * @param ply     the plies from the root.
+     * @param alpha   the lower bound.
+     * @param beta    the upper bound.
+     * @return the score.
+     */
+    private int negamax(SearchContext context, Board.Mark mark, int depth, int ply, int alpha,
+                        int beta) {
+        Board board = context.board;
+        Board.Mark opponent = mark.getOpponent();
+        if (context.visit()) {
+            return 0;
+        }
+        if (board.hasWon(opponent)) {
+            return ply - WIN_SCORE;
+        }
+        int emptyCount = board.getEmptyCount();
+        if (emptyCount == 0) {
+            return 0;
+        }
+        if (depth <= 0) {
+            context.evaluations += 1;
+            return -evaluate(board, opponent);
+        }
+        depth = Math.min(depth, emptyCount);
+
+        BoardGeometry geometry = board.getGeometry();
+        int symmetry = board.getCanonicalSymmetry();
+        long key = board.getHash(symmetry) ^ (mark == Board.Mark.A ? SIDE_A : SIDE_B);
+        int ttMove = -1;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            context.tableHits += 1;
+            if (TranspositionTable.getDepth(entry) == depth) {
+                int value = fromTable(TranspositionTable.getValue(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && value >= beta)
+                        || (bound == TranspositionTable.UPPER && value <= alpha)) {
+                    return value;
+                }
+            }
+            ttMove = TranspositionTable.getMove(entry);
+            if (ttMove < geometry.getCells()) {
+                ttMove = geometry.inverseTransform(symmetry, ttMove);
+            }
+        }
+
+        int[] moves = context.moves[ply];
+        int count = board.getEmptyCells(moves);
+        // Try the best move of the earlier search first, then the others in row order.
+        for (int j = 0; j < count; j++) {
+            if (moves[j] == ttMove) {
+                System.arraycopy(moves, 0, moves, 1, j);
+                moves[0] = ttMove;
+                break;
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int j = 0; j < count; j++) {
+            int i = moves[j];
+            board.makeMove(i, mark);
+            int score = -negamax(context, opponent, depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (context.aborted) {
+                // Don't store the meaningless scores.
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = i;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        context.cutoffs += 1;
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound;
+        if (best <= originalAlpha) {
+            bound = TranspositionTable.UPPER;
+        } else if (best >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        table.store(key, toTable(best, ply), depth, bound, geometry.transform(symmetry, bestMove));
+        return best;
+    }
+
+    /**
+     * Get the best choice of the agent in given status of the board. Among the moves of the same
+     * score, the first one in row order is chosen. On the 3x3 board, a search as deep as the empty
+     * cells is answered by the {@link PerfectPlayTable} if it's loaded, and as the table only
+     * keeps the game values, the utility is then {@link #WIN_SCORE}, 0 or -{@link #WIN_SCORE}.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player.
+     * @param depth the plies to search, at least 1.
+     * @return the choice, or null if there's no empty cell.
+     */
+    public Choice getBestChoice(Board board, Board.Mark mark, int depth) {
+        long start = System.nanoTime();
+        SearchStatistics statistics = new SearchStatistics();
+        Choice choice = choose(board, mark, depth, statistics);
+        finish(board, mark, choice, statistics, Math.min(depth, board.getEmptyCount()), start);
+        return choice;
+    }
+
+    /**
+     * Get the best choice of the fixed-depth search: the threat-space search if it doesn't reach
+     * the end of the game, then the perfect play, the result cache or the search of the defences
+     * or all the moves. The listeners aren't notified.
+     *
+     * @param board      the board of the game.
+     * @param mark       the mark of the player.
+     * @param depth      the plies to search, at least 1.
+     * @param statistics the statistics to count the search into.
+     * @return the choice, or null if there's no empty cell.
+     */
+    private Choice choose(Board board, Board.Mark mark, int depth, SearchStatistics statistics) {
+        Choice choice = null;
+        int[] defences = null;
+        if (depth < board.getEmptyCount()) {
+            choice = searchThreats(board, mark, statistics);
+            if (choice == null) {
+                defences = searchDefences(board, mark, statistics);
+            }
+        }
+        if (choice == null) {
+            choice = solve(board, mark, depth, null, statistics, defences);
+        }
+        return choice;
+    }
+
+    /**
+     * Record the statistics of a finished search and notify the listeners.
+     *
+     * @param board      the board of the game.
+     * @param mark       the mark of the player.
+     * @param choice     the choice.
+     * @param statistics the statistics of the search.
+     * @param depth      the depth reached.
+     * @param start      the start time in nanoseconds.
+     */
+    private void finish(Board board, Board.Mark mark, Choice choice, SearchStatistics statistics,
+                        int depth, long start) {
+        statistics.finish(depth, System.nanoTime() - start);
+        this.statistics.add(statistics);
+        for (SearchListener listener : listeners) {
+            listener.onSearchFinished(board, mark, choice, statistics);
+        }
+    }
+
+    /**
+     * Run the threat-space search for a forced win if it's turned on. The utility of the win
+     * counts its plies, as in the main search.
+     *
+     * @param board      the board of the game.
+     * @param mark       the mark of the player.
+     * @param statistics the statistics to count the nodes into.
+     * @return the winning move, or null if there's none.
+     * @see #setThreatSearchBudget(int)
+     */
+    private Choice searchThreats(Board board, Board.Mark mark, SearchStatistics statistics) {
+        ThreatSpaceSearch threats = getThreatSpaceSearch(board);
+        if (threats == null) {
+            return null;
+        }
+        int move = threats.findWin(board, mark);
+        statistics.addNodes(threats.getNodes());
+        if (move != ThreatSpaceSearch.NONE) {
+            return toChoice(board, move, WIN_SCORE - threats.getWinningLine().length);
+        }
+        return null;
+    }
+
+    /**
+     * Run the threat-space search for the defences against a forced win of the opponent if it's
+     * turned on. The defences only stop the threats, so they're left to the main search.
+     *
+     * @param board      the board of the game.
+     * @param mark       the mark of the player.
+     * @param statistics the statistics to count the nodes into.
+     * @return the defences to search, or null to search all the moves, i.e. if the opponent has
+     * no forced win found or none of the moves stops it.
+     * @see #setThreatSearchBudget(int)
+     */
+    private int[] searchDefences(Board board, Board.Mark mark, SearchStatistics statistics) {
+        ThreatSpaceSearch threats = getThreatSpaceSearch(board);
+        if (threats == null) {
+            return null;
+        }
+        int[] defences = new int[board.getGeometry().getCells()];
+        int count = threats.findDefences(board, mark, defences);
+        statistics.addNodes(threats.getNodes());
+        return count > 0 ? Arrays.copyOf(defences, count) : null;
+    }
+
+    /**
+     * Get the threat-space search of the thread with the budget set.
+     *
+     * @param board the board of the game.
+     * @return the search, or null if it's turned off or the game is over.
+     */
+    private ThreatSpaceSearch getThreatSpaceSearch(Board board) {
+        int budget = threatSearchBudget;
+        if (budget <= 0 || board.getStatus() != Board.Status.RUNNING) {
+            return null;
+        }
+        SearchContext context = contexts.get();
+        if (context.threats == null) {
+            context.threats = new ThreatSpaceSearch();
+        }
+        context.threats.setMaxNodes(budget);
+        return context.threats;
+    }
+
+    /**
+     * Get the best choice from the perfect play, the result cache or else the search, caching the
+     * result of a completed search. The search of the given root moves isn't cached, while the
+     * perfect play, being exact, may choose any move.
+     *
+     * @param board      the board of the game.
+     * @param mark       the mark of the player.
+     * @param depth      the plies to search, at least 1.
+     * @param control    the control of the search, or null.
+     * @param statistics the statistics to count the search into.
+     * @param rootMoves  the moves to search at the root, or null for all the empty cells.
+     * @return the choice, or null if there's no empty cell.
+     */
+    private Choice solve(Board board, Board.Mark mark, int depth, SearchControl control,
+                         SearchStatistics statistics, int[] rootMoves) {
+        Choice choice = lookupPerfectPlay(board, mark, depth);
+        if (choice == null) {
+            choice = lookupEndgame(board, mark, depth);
+        }
+        if (choice != null) {
+            statistics.addPerfectPlayHit();
+            return choice;
+        }
+        ResultCache cache = resultCache;
+        if (cache == null || board.getEmptyCount() == 0 || rootMoves != null) {
+            return search(board, mark, depth, control, statistics, rootMoves);
+        }
+        int capped = Math.min(depth, board.getEmptyCount());
+        choice = cache.get(board, mark, capped);
+        if (choice != null) {
+            statistics.addResultCacheHit();
+            return choice;
+        }
+        choice = search(board, mark, depth, control, statistics, null);
+        if (choice != null && (control == null || !control.isAborted())) {
+            cache.put(board, mark, capped, choice);
+        }
+        return choice;
+    }
+
+    /**
+     * Look up the perfect play if the search is as deep as the empty cells of the 3x3 board.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player.
+     * @param depth the plies to search.
+     * @return the choice, or null if it's not in the table.
+     */
+    private Choice lookupPerfectPlay(Board board, Board.Mark mark, int depth) {
+        if (board.getGeometry() == BoardGeometry.STANDARD && depth >= board.getEmptyCount()) {
+            return lookupPerfectPlay(PerfectPlayTable.indexOf(board, mark));
+        }
+        return null;
+    }
+
+    /**
+     * Look up the endgame database if the search is as deep as the empty cells of its board. The
+     * database only keeps the game values, so the plies to the end of the won and the lost games
+     * are derived from it, and the moves are scored as the search scores them: the faster win
+     * and the slower loss are preferred, and the first move of the best score in row order is
+     * chosen.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player.
+     * @param depth the plies to search.
+     * @return the choice, or null if it's not in the database.
+     */
+    private Choice lookupEndgame(Board board, Board.Mark mark, int depth) {
+        EndgameDatabase database = endgameDatabase;
+        if (database == null || database.getGeometry() != board.getGeometry()
+                || depth < board.getEmptyCount() || !database.isSolved()
+                || board.getStatus() != Board.Status.RUNNING) {
+            return null;
+        }
+        long state = database.stateOf(board, mark);
+        int[] moves = new int[board.getGeometry().getCells()];
+        int count = board.getEmptyCells(moves);
+        for (int j = 0; j < count; j++) {
+            if (database.get(database.after(state, moves[j])) == PerfectPlayTable.UNKNOWN) {
+                return null;
+            }
+        }
+        int value = database.get(state);
+        Board copy = board.clone();
+        Map<Long, Integer> distances = new HashMap<>();
+        // The plies of the best move so far, beyond any distance until a move is measured.
+        int best = value == PerfectPlayTable.LOSS ? 0 : count + 1;
+        int position = -1;
+        for (int j = 0; j < count; j++) {
+            long after = database.after(state, moves[j]);
+            int afterValue = database.get(after);
+            if (value == PerfectPlayTable.DRAW) {
+                if (afterValue == PerfectPlayTable.DRAW) {
+                    return toChoice(board, moves[j], 0);
+                }
+                continue;
+            }
+            if (value == PerfectPlayTable.WIN && afterValue != PerfectPlayTable.LOSS) {
+                continue;
+            }
+            // Only a faster win or a slower loss than the best one is measured.
+            copy.makeMove(moves[j], mark);
+            int plies = 1 + (value == PerfectPlayTable.WIN
+                    ? getDistanceToEnd(database, copy, mark.getOpponent(), after, -1, best - 1,
+                    distances)
+                    : getDistanceToEnd(database, copy, mark.getOpponent(), after, best - 1,
+                    count + 1, distances));
+            copy.unmakeMove();
+            if (value == PerfectPlayTable.WIN ? plies < best : plies > best) {
+                best = plies;
+                position = moves[j];
+            }
+        }
+        return toChoice(board, position, value == PerfectPlayTable.WIN
+                ? WIN_SCORE - best : best - WIN_SCORE);
+    }
+
+    /**
+     * Get the plies to the end of a won or lost state of the endgame database, the winner
+     * playing the fastest win and the loser the slowest loss. The distance is searched by
+     * alpha-beta within the window, only the winning moves of the winner are searched, and the
+     * exact distances are remembered.
+     *
+     * @param database  the solved database.
+     * @param board     the board of the state, restored before returning.
+     * @param mark      the mark of the player to move.
+     * @param state     the state, won or lost for the player to move.
+     * @param lower     the distance at most which only a bound is needed.
+     * @param upper     the distance at least which only a bound is needed.
+     * @param distances the exact distances of the states already searched.
+     * @return the plies, exact if it's within the window, or else a bound beyond the window.
+     */
+    private int getDistanceToEnd(EndgameDatabase database, Board board, Board.Mark mark,
+                                 long state, int lower, int upper, Map<Long, Integer> distances) {
+        if (board.hasWon(mark.getOpponent())) {
+            return 0;
+        }
+        Integer known = distances.get(state);
+        if (known != null) {
+            return known;
+        }
+        boolean winning = database.get(state) == PerfectPlayTable.WIN;
+        int[] moves = new int[board.getGeometry().getCells()];
+        int count = board.getEmptyCells(moves);
+        // The winner places a mark every two plies, so no win is faster than its missing marks,
+        // and no loss is slower than the empty cells.
+        int fastest = 2 * board.getMinimumStepsToWin(mark) - 1;
+        int distance = winning ? count + 1 : 0;
+        for (int j = 0; j < count; j++) {
+            long after = database.after(state, moves[j]);
+            // The winner only plays the winning moves, while every move of the loser loses.
+            if (winning && database.get(after) != PerfectPlayTable.LOSS) {
+                continue;
+            }
+            board.makeMove(moves[j], mark);
+            int plies = 1 + (winning
+                    ? getDistanceToEnd(database, board, mark.getOpponent(), after, lower - 1,
+                    Math.min(upper, distance) - 1, distances)
+                    : getDistanceToEnd(database, board, mark.getOpponent(), after,
+                    Math.max(lower, distance) - 1, upper - 1, distances));
+            board.unmakeMove();
+            if (winning) {
+                distance = Math.min(distance, plies);
+                if (distance <= Math.max(lower, fastest)) {
+                    break;
+                }
+            } else {
+                distance = Math.max(distance, plies);
+                if (distance >= Math.min(upper, count)) {
+                    break;
+                }
+            }
+        }
+        if ((lower < distance && distance < upper)
+                || (winning ? distance <= fastest : distance >= count)) {
+            distances.put(state, distance);
+        }
+        return distance;
+    }
+
+    /**
+     * Look up the perfect play of the 3x3 position.
+     *
+     * @param index the base-3 index of the position.
+     * @return the choice, or null if it's not in the table.
+     */
+    private Choice lookupPerfectPlay(int index) {
+        PerfectPlayTable perfectPlay = perfectPlayTable;
+        if (perfectPlay != null) {
+            int entry = perfectPlay.lookup(index);
+            int move = PerfectPlayTable.getMove(entry);
+            if (PerfectPlayTable.getValue(entry) != PerfectPlayTable.UNKNOWN
+                    && move != PerfectPlayTable.NO_MOVE) {
+                int utility = (PerfectPlayTable.getValue(entry) - PerfectPlayTable.DRAW) * WIN_SCORE;
+                return new Choice(move / 3, move % 3, utility);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the best choice by iterative deepening within the limits. It returns the choice of the
+     * deepest completed iteration once a limit is reached or the token is cancelled, so the
+     * latency is bounded whatever the board size is.
+     *
+     * @param board  the board of the game.
+     * @param mark   the mark of the player.
+     * @param limits the limits of the search.
+     * @param token  the token to cancel the search, or null.
+     * @return the choice, or null if there's no empty cell.
+     */
+    public Choice getBestChoice(Board board, Board.Mark mark, SearchLimits limits,
+                                CancellationToken token) {
+        long start = System.nanoTime();
+        SearchStatistics statistics = new SearchStatistics();
+        SearchControl control = new SearchControl(limits, token);
+        int reached = 0;
+        int maxDepth = board.getEmptyCount();
+        if (limits.getMaxDepth() > 0) {
+            maxDepth = Math.min(maxDepth, limits.getMaxDepth());
+        }
+        Choice threat = searchThreats(board, mark, statistics);
+        int[] defences = threat == null ? searchDefences(board, mark, statistics) : null;
+        Choice best = threat;
+        if (threat != null) {
+            // The plies of the winning line are searched.
+            reached = WIN_SCORE - threat.getUtility();
+        }
+        for (int depth = 1; threat == null && depth <= maxDepth && !control.check(0); depth++) {
+            Choice choice = solve(board, mark, depth, control, statistics, defences);
+            if (control.isAborted()) {
+                // Only take the partial result if no iteration has completed.
+                if (best == null) {
+                    best = choice;
+                }
+                break;
+            }
+            best = choice;
+            reached = depth;
+        }
+        if (best == null && board.getEmptyCount() > 0) {
+            int[] moves = new int[board.getGeometry().getCells()];
+            board.getEmptyCells(moves);
+            best = toChoice(board, moves[0], 0);
+        }
+        finish(board, mark, best, statistics, reached, start);
+        return best;
+    }
+
+    /**
+     * Score every move of the board by iterative deepening within the limits. Unlike searching
+     * each move on its own board, the moves are searched on one context, sharing the
+     * transposition table and its bounds across the moves and the iterations, and a move proved
+     * won or lost isn't searched again by the deeper iterations. The moves answered by the
+     * {@link PerfectPlayTable} or the {@link EndgameDatabase} aren't searched at all.
+     * <p>
+     * The scores are passed to the listener as soon as each move is scored, so a partial analysis
+     * can be shown while the deeper iterations run. The analysis is counted into
+     * {@link #getStatistics()}, but not reported to the {@link SearchListener}s.
+     *
+     * @param board    the board of the game, not modified.
+     * @param mark     the mark of the player to move.
+     * @param limits   the limits of the analysis.
+     * @param token    the token to cancel the analysis, or null.
+     * @param listener the listener of the scores, or null.
+     * @return the choices of the empty cells in row order, scored by the deepest completed
+     * iteration, or null if no iteration has completed. It's empty if the game is over.
+     */
+    public Choice[] analyze(Board board, Board.Mark mark, SearchLimits limits,
+                            CancellationToken token, AnalysisListener listener) {
+        long start = System.nanoTime();
+        SearchStatistics statistics = new SearchStatistics();
+        SearchControl control = new SearchControl(limits, token);
+        if (board.getStatus() != Board.Status.RUNNING) {
+            return new Choice[0];
+        }
+        int[] moves = new int[board.getGeometry().getCells()];
+        int count = board.getEmptyCells(moves);
+        int[] scores = new int[count];
+        boolean[] proved = new boolean[count];
+        int maxDepth = count;
+        if (limits.getMaxDepth() > 0) {
+            maxDepth = Math.min(maxDepth, limits.getMaxDepth());
+        }
+        Choice[] analysis = null;
+        int reached = 0;
+        Board.Mark opponent = mark.getOpponent();
+        for (int depth = 1; depth <= maxDepth && !control.check(0); depth++) {
+            SearchContext context = contexts.get();
+            context.reset(board, control);
+            Choice[] choices = new Choice[count];
+            for (int j = 0; j < count && !context.aborted; j++) {
+                if (!proved[j]) {
+                    context.board.makeMove(moves[j], mark);
+                    int value = lookupValue(context.board, opponent, depth - 1);
+                    if (value != PerfectPlayTable.UNKNOWN) {
+                        statistics.addPerfectPlayHit();
+                        scores[j] = (PerfectPlayTable.DRAW - value) * WIN_SCORE;
+                    } else {
+                        scores[j] = -negamax(context, opponent, depth - 1, 1, -INFINITY,
+                                INFINITY);
+                    }
+                    context.board.unmakeMove();
+                    if (context.aborted) {
+                        break;
+                    }
+                    proved[j] = Math.abs(scores[j]) > WIN_BOUND;
+                }
+                choices[j] = toChoice(board, moves[j], scores[j]);
+                if (listener != null) {
+                    listener.onMoveAnalyzed(choices[j], depth);
+                }
+            }
+            statistics.add(context);
+            if (context.aborted) {
+                break;
+            }
+            analysis = choices;
+            reached = depth;
+        }
+        // Counted into the statistics, but the search listeners only see the choices of moves.
+        statistics.finish(reached, System.nanoTime() - start);
+        this.statistics.add(statistics);
+        return analysis;
+    }
+
+    /**
+     * Look up the game value of the position in the {@link PerfectPlayTable} or the
+     * {@link EndgameDatabase}, if the search is as deep as the empty cells.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player to move.
+     * @param depth the plies to search.
+     * @return the value for the player to move, or {@link PerfectPlayTable#UNKNOWN}.
+     */
+    private int lookupValue(Board board, Board.Mark mark, int depth) {
+        if (depth < board.getEmptyCount()) {
+            return PerfectPlayTable.UNKNOWN;
+        }
+        PerfectPlayTable perfectPlay = perfectPlayTable;
+        if (perfectPlay != null && board.getGeometry() == BoardGeometry.STANDARD) {
+            return PerfectPlayTable.getValue(perfectPlay.lookup(board, mark));
+        }
+        EndgameDatabase database = endgameDatabase;
+        if (database != null && database.getGeometry() == board.getGeometry()
+                && database.isSolved()) {
+            return database.getValue(board, mark);
+        }
+        return PerfectPlayTable.UNKNOWN;
+    }
+
+    /**
+     * Search the best choice without the precomputed table.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player.
+     * @param depth the plies to search, at least 1.
+     * @return the choice, or null if there's no empty cell.
+     * @see #getBestChoice(Board, Board.Mark, int)
+     */
+    Choice search(Board board, Board.Mark mark, int depth) {
+        return search(board, mark, depth, null, null, null);
+    }
+
+    /**
+     * Search the best choice within the limits. If the search is aborted, the choice is the best
+     * of the root moves completed before that, or null if none has completed.
+     *
+     * @param board      the board of the game.
+     * @param mark       the mark of the player.
+     * @param depth      the plies to search, at least 1.
+     * @param control    the limits of the search, or null if it's unlimited.
+     * @param statistics the statistics to count the search into, or null.
+     * @param rootMoves  the moves to search at the root, or null for all the empty cells.
+     * @return the choice, or null if there's no empty cell.
+     */
+    private Choice search(Board board, Board.Mark mark, int depth, SearchControl control,
+                          SearchStatistics statistics, int[] rootMoves) {
+        // Search on the context of the thread, so the search doesn't allocate.
+        SearchContext context = contexts.get();
+        context.reset(board, control);
+        board = context.board;
+        int[] moves = context.moves[0];
+        int count = board.getEmptyCells(moves);
+        if (rootMoves != null) {
+            // Keep the row order of the given moves, so the ties are broken the same way.
+            int kept = 0;
+            for (int j = 0; j < count; j++) {
+                for (int move : rootMoves) {
+                    if (moves[j] == move) {
+                        moves[kept++] = move;
+                        break;
+                    }
+                }
+            }
+            count = kept;
+        }
+        ExecutorService executor = context.serial ? null : this.executor;
+        Choice choice;
+        if (executor != null && count > 1) {
+            try {
+                choice = searchParallel(executor, board, mark, depth, control, statistics, moves,
+                        count);
+            } catch (RejectedExecutionException e) {
+                // The pool is shut down by setParallelism, so search on the calling thread.
+                choice = searchRoot(context, mark, depth, count);
+            }
+        } else {
+            choice = searchRoot(context, mark, depth, count);
+        }
+        if (statistics != null) {
+            statistics.add(context);
+        }
+        return choice;
+    }
+
+    /**
+     * Search the root moves of the context on the calling thread.
+     *
+     * @param context the context, with the root moves in the buffer of ply 0.
+     * @param mark    the mark of the player.
+     * @param depth   the plies to search.
+     * @param count   the number of the root moves.
+     * @return the choice, or null if there's no root move.
+     */
+    private Choice searchRoot(SearchContext context, Board.Mark mark, int depth, int count) {
+        Board board = context.board;
+        int[] moves = context.moves[0];
+        Board.Mark opponent = mark.getOpponent();
+        int alpha = -INFINITY;
+        int position = -1;
+        for (int j = 0; j < count; j++) {
+            int i = moves[j];
+            board.makeMove(i, mark);
+            int score = -negamax(context, opponent, depth - 1, 1, -INFINITY, -alpha);
+            board.unmakeMove();
+            if (context.aborted) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                position = i;
+            }
+        }
+        return toChoice(board, position, alpha);
+    }
+
+    /**
+     * Search the root moves on the threads of the executor, sharing the transposition table. Each
+     * root move is searched with the full window, so the scores are exact and the choice is the
+     * same as the one of the single-threaded search.
+     *
+     * @param executor   the executor.
+     * @param board      the board of the game, not modified while searching.
+     * @param mark       the mark of the player.
+     * @param depth      the plies to search.
+     * @param control    the limits of the search, or null if it's unlimited.
+     * @param statistics the statistics to count the search into, or null.
+     * @param moves      the root moves.
+     * @param count      the number of the root moves.
+     * @return the choice.
+     * @throws RejectedExecutionException if the executor is shut down, with the submitted root
+     *                                    moves cancelled.
+     */
+    private Choice searchParallel(ExecutorService executor, final Board board, final Board.Mark mark,
+                                  final int depth, final SearchControl control,
+                                  final SearchStatistics statistics, int[] moves, int count) {
+        List<Future<Integer>> scores = new ArrayList<>(count);
+        int alpha = -INFINITY;
+        int position = -1;
+        try {
+            for (int j = 0; j < count; j++) {
+                final int i = moves[j];
+                scores.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        SearchContext context = contexts.get();
+                        context.reset(board, control);
+                        context.board.makeMove(i, mark);
+                        int score = -negamax(context, mark.getOpponent(), depth - 1, 1,
+                                -INFINITY, INFINITY);
+                        if (statistics != null) {
+                            statistics.add(context);
+                        }
+                        // The aborted root move has no score.
+                        return context.aborted ? null : score;
+                    }
+                }));
+            }
+            for (int j = 0; j < count; j++) {
+                Integer score = scores.get(j).get();
+                if (score != null && score > alpha) {
+                    alpha = score;
+                    position = moves[j];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to search.", e.getCause());
+        } finally {
+            for (Future<Integer> score : scores) {
+                score.cancel(true);
+            }
+        }
+        return toChoice(board, position, alpha);
+    }
+
+    /**
+     * Get the best moves of a batch of 3x3 positions, each packed by {@link PackedPosition}. It's
+     * the same as calling {@link #getBestChoice(Board, Board.Mark, int)} on each position, but
+     * the positions are solved in a tight loop without the boards, the repeated positions are
+     * solved once, and the batch is split across the threads set by {@link #setParallelism(int)}.
+     *
+     * @param positions the packed positions.
+     * @param depth     the plies to search, at least 1.
+     * @return the best move of each position as the flatted index, or -1 if there's no empty cell.
+     */
+    public int[] getBestMoves(final int[] positions, final int depth) {
+        final int[] moves = new int[positions.length];
+        runBatch(positions.length, new BatchRange() {
+            @Override
+            public void run(int from, int to) {
+                BatchSolver solver = new BatchSolver(to - from >= MIN_MEMO_BATCH);
+                for (int p = from; p < to; p++) {
+                    moves[p] = getSolutionMove(solver.solve(positions[p], depth));
+                }
+            }
+        });
+        return moves;
+    }
+
+    /**
+     * Get the best choices of a batch of boards. It's the same as calling
+     * {@link #getBestChoice(Board, Board.Mark, int)} on each board, but the 3x3 boards are packed
+     * and solved as by {@link #getBestMoves(int[], int)}, and the batch is split across the
+     * threads set by {@link #setParallelism(int)}. Each of the other boards is searched on the
+     * thread of its range, and the listeners aren't notified.
+     *
+     * @param boards the boards, not modified.
+     * @param marks  the mark of the player to move on each board.
+     * @param depth  the plies to search, at least 1.
+     * @return the choice of each board, or null if there's no empty cell.
+     */
+    public Choice[] getBestChoices(final Board[] boards, final Board.Mark[] marks,
+                                   final int depth) {
+        if (boards.length != marks.length) {
+            throw new IllegalArgumentException("The boards and the marks don't match.");
+        }
+        final Choice[] choices = new Choice[boards.length];
+        runBatch(boards.length, new BatchRange() {
+            @Override
+            public void run(int from, int to) {
+                BatchSolver solver = new BatchSolver(to - from >= MIN_MEMO_BATCH);
+                SearchStatistics statistics = new SearchStatistics();
+                // The range may run on the executor, which can't wait for itself.
+                SearchContext context = contexts.get();
+                context.serial = true;
+                try {
+                    for (int p = from; p < to; p++) {
+                        Board board = boards[p];
+                        if (board.getGeometry() == BoardGeometry.STANDARD) {
+                            long solution = solver.solve(PackedPosition.pack(board, marks[p]),
+                                    depth);
+                            int move = getSolutionMove(solution);
+                            if (move >= 0) {
+                                choices[p] = new Choice(move / 3, move % 3,
+                                        (int) (solution >> 32));
+                            }
+                        } else {
+                            choices[p] = choose(board, marks[p], depth, statistics);
+                        }
+                    }
+                } finally {
+                    context.serial = false;
+                }
+            }
+        });
+        return choices;
+    }
+
+    /**
+     * A range of a batch, solved on one thread.
+     */
+    private interface BatchRange {
+        void run(int from, int to);
+    }
+
+    /**
+     * Run the batch on the calling thread, or split it into a range per thread of the executor.
+     * The ranges rejected by the executor shut down by {@link #setParallelism(int)} are run on
+     * the calling thread.
+     *
+     * @param length the length of the batch.
+     * @param range  the solver of the ranges.
+     */
+    private void runBatch(int length, final BatchRange range) {
+        ExecutorService executor = this.executor;
+        int chunks = Math.min(parallelism, length / MIN_SPLIT_BATCH);
+        if (executor == null || chunks < 2) {
+            range.run(0, length);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        try {
+            for (int c = 0; c < chunks; c++) {
+                final int from = (int) ((long) length * c / chunks);
+                final int to = (int) ((long) length * (c + 1) / chunks);
+                try {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            range.run(from, to);
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    range.run(from, to);
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to search.", e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The solver of the packed positions of a range of a batch, on one thread.
+     */
+    private final class BatchSolver {
+
+        private final boolean memorize;
+
+        /**
+         * The searched solutions indexed by the position, allocated on the first search.
+         */
+        private long[] solutions;
+
+        BatchSolver(boolean memorize) {
+            this.memorize = memorize;
+        }
+
+        /**
+         * Solve the packed position. The solution keeps the utility in the high 32 bits and the
+         * move plus 1 in the low 16 bits, with {@link #SOLVED} set so it's never 0.
+         *
+         * @param position the packed position.
+         * @param depth    the plies to search.
+         * @return the solution.
+         */
+        long solve(int position, int depth) {
+            Board.Mark mark = PackedPosition.getMover(position);
+            int index = PerfectPlayTable.indexOf(PackedPosition.getBits(position, mark),
+                    PackedPosition.getBits(position, mark.getOpponent()));
+            if (depth >= PackedPosition.getEmptyCount(position)) {
+                Choice choice = lookupPerfectPlay(index);
+                if (choice != null) {
+                    return toSolution(choice);
+                }
+            }
+            int key = 2 * index + (mark == Board.Mark.B ? 1 : 0);
+            if (solutions != null && solutions[key] != 0) {
+                return solutions[key];
+            }
+            SearchContext context = contexts.get();
+            context.reset(position, null);
+            int count = context.board.getEmptyCells(context.moves[0]);
+            long solution = toSolution(searchRoot(context, mark, depth, count));
+            if (memorize) {
+                if (solutions == null) {
+                    solutions = new long[MEMO_SIZE];
+                }
+                solutions[key] = solution;
+            }
+            return solution;
+        }
+    }
+
+    private static long toSolution(Choice choice) {
+        long solution = SOLVED;
+        if (choice != null) {
+            int move = choice.getX() * 3 + choice.getY();
+            solution |= ((long) choice.getUtility() << 32) | (move + 1);
+        }
+        return solution;
+    }
+
+    private static int getSolutionMove(long solution) {
+        return (int) (solution & 0xffff) - 1;
+    }
+
+    private static Choice toChoice(Board board, int position, int utility) {
+        if (position >= 0) {
+            int width = board.getGeometry().getWidth();
+            return new Choice(position / width, position % width, utility);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Get the best choice of the agent in given status of the board. This is the same as
+     * {@link #getBestChoice(Board, Board.Mark, int)} with depth default to 1.
+     *
+     * @param board the board of the game.
+     * @param mark  the mark of the player.
+     * @return the choice.
+     * @see #getBestChoice(Board, Board.Mark, int)
+     */
+    public Choice getBestChoice(Board board, Board.Mark mark) {
+        return getBestChoice(board, mark, 1);
+    }
+
+    /**
+     * The choice of the agent.
+     */
+    public static class Choice {
+        private int x;
+        private int y;
+        private int utility;
+
+        /**
+         * Construct an empty choice.
+         */
+        public Choice() {
+        }
+
+        /**
+         * Construct a choice by given position and utlity.
+         *
+         * @param x       the position x.
+         * @param y       the position y.
+         * @param utility the utility.
+         */
+        public Choice(int x, int y, int utility) {
+            this.x = x;
+            this.y = y;
+            this.utility = utility;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+
+        public int getUtility() {
+            return utility;
+        }
+
+        public void setUtility(int utility) {
+            this.utility = utility;
+        }
+
+        @Override
+        public String toString() {
+            return "Choice{" +
+                    "x=" + x +
+                    ", y=" + y +
+                    ", utility=" + utility +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * Notified of the scores of the moves as the {@link Agent} analyses a position, on the thread of
+ * the analysis.
+ *
+ * @author yfwz100
+ * @see Agent#analyze(Board, Board.Mark, SearchLimits, CancellationToken, AnalysisListener)
+ */
+public interface AnalysisListener {
+
+    /**
+     * Called when a move is scored by an iteration of the analysis. The moves are scored again by
+     * the deeper iterations, so a later call for the same cell replaces the earlier one.
+     *
+     * @param choice the move and its score for the player to move.
+     * @param depth  the plies searched.
+     */
+    void onMoveAnalyzed(Agent.Choice choice, int depth);
+}
@@ -0,0 +1,746 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static io.github.yfwz100.tictactoe.Board.Mark.*;
+
+/**
+ * The board of the TicTacToe game. It's 3x3 by default, and generalized to the m,n,k game of
+ * any {@link BoardGeometry}.
+ *
+ * @author yfwz100
+ */
+public class Board implements Iterable<Board.BoardCell>, Cloneable, Serializable {
+
+    /**
+     * Notifies the changes of board cell.
+     *
+     * @author yfwz100
+     */
+    public interface BoardCellChangeListener {
+        void notifyChanged(int x, int y, Mark mark);
+    }
+
+    /**
+     * The iterator of the board cell.
+     *
+     * @author yfwz100
+     */
+    private class BoardCellIterator implements Iterator<BoardCell> {
+        private int index = -1;
+
+        @Override
+        public boolean hasNext() {
+            return index < geometry.getCells() - 1;
+        }
+
+        @Override
+        public BoardCell next() {
+            index += 1;
+            int width = geometry.getWidth();
+            return new BoardCell(index / width, index % width, flat(index));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Couldn't remove the position.");
+        }
+    }
+
+    /**
+     * The board cell. It records the position of the cell and the mark.
+     *
+     * @author yfwz100
+     */
+    public static class BoardCell {
+        private int x;
+        private int y;
+        private Mark mark;
+
+        /**
+         * Construct an empty cell.
+         */
+        public BoardCell() {
+        }
+
+        /**
+         * Construct a board cell.
+         *
+         * @param x    the position x.
+         * @param y    the position y.
+         * @param mark the mark.
+         */
+        public BoardCell(int x, int y, Mark mark) {
+            this.x = x;
+            this.y = y;
+            this.mark = mark;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+
+        public Mark getMark() {
+            return mark;
+        }
+
+        public void setMark(Mark mark) {
+            this.mark = mark;
+        }
+    }
+
+    /**
+     * The mark of a cell.
+     *
+     * @author yfwz100
+     */
+    public enum Mark {
+        A, B, NA;
+
+        /**
+         * A convenient method to get the opponent. `NA` maps to `NA` itself.
+         *
+         * @return the mark of the opponent.
+         */
+        public Mark getOpponent() {
+            if (this == A) {
+                return B;
+            } else if (this == B) {
+                return A;
+            } else {
+                return NA;
+            }
+        }
+    }
+
+    /**
+     * The status of the game.
+     *
+     * @author yfwz100
+     */
+    public enum Status {
+        RUNNING, A_WIN, B_WIN, END
+    }
+
+    private static final long serialVersionUID = 2L;
+
+    private transient BoardGeometry geometry;
+
+    private transient List<BoardCellChangeListener> notifiers = new ArrayList<>();
+
+    /**
+     * The bit masks of the cells of A and B. The bit {@code i % 64} of the word {@code i / 64}
+     * stands for the flatted index {@code i} (in row order).
+     */
+    private transient long[] bitsA;
+    private transient long[] bitsB;
+
+    private transient int occupied = 0;
+
+    /**
+     * The Zobrist hashes of the board under each symmetry, updated on every placement.
+     */
+    private transient long[] hashes;
+
+    /**
+     * The number of marks of A and B on each line.
+     */
+    private transient int[] lineCountsA;
+    private transient int[] lineCountsB;
+
+    /**
+     * The number of the lines without any opponent mark, by the number of the player's marks on
+     * it. The sum is the open lines and the last one is the complete lines of the player.
+     */
+    private transient int[] openLinesA;
+    private transient int[] openLinesB;
+    private transient int openLineCountA;
+    private transient int openLineCountB;
+
+    private transient int lastMove = -1;
+
+    /**
+     * The moves made by {@link #makeMove(int, Mark)} and the last moves before them, to undo.
+     */
+    private transient int[] madeMoves;
+    private transient int[] previousLastMoves;
+    private transient int madeMoveCount = 0;
+
+    /**
+     * Construct an empty 3x3 board.
+     */
+    public Board() {
+        this(BoardGeometry.STANDARD);
+    }
+
+    /**
+     * Construct an empty board of the given size.
+     *
+     * @param width     the number of columns.
+     * @param height    the number of rows.
+     * @param winLength the number of marks in a row to win.
+     */
+    public Board(int width, int height, int winLength) {
+        this(BoardGeometry.of(width, height, winLength));
+    }
+
+    /**
+     * Construct an empty board of the given geometry.
+     *
+     * @param geometry the geometry.
+     */
+    public Board(BoardGeometry geometry) {
+        this.geometry = geometry;
+        this.bitsA = new long[geometry.getWords()];
+        this.bitsB = new long[geometry.getWords()];
+        this.hashes = new long[geometry.getSymmetryCount()];
+        this.lineCountsA = new int[geometry.getLineCount()];
+        this.lineCountsB = new int[geometry.getLineCount()];
+        this.openLinesA = new int[geometry.getWinLength() + 1];
+        this.openLinesB = new int[geometry.getWinLength() + 1];
+        this.openLinesA[0] = this.openLinesB[0] = geometry.getLineCount();
+        this.openLineCountA = this.openLineCountB = geometry.getLineCount();
+        this.madeMoves = new int[geometry.getCells()];
+        this.previousLastMoves = new int[geometry.getCells()];
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Register board cell change listener to the board.
+     *
+     * @param listener the listener.
+     */
+    public void addCellNotifier(BoardCellChangeListener listener) {
+        notifiers.add(listener);
+    }
+
+    /**
+     * Remove board cell change listener from the board.
+     *
+     * @param listener the listener.
+     */
+    public void removeCellNotifier(BoardCellChangeListener listener) {
+        notifiers.remove(listener);
+    }
+
+    /**
+     * Get the list of the board cell change listeners.
+     *
+     * @return the unmodifiable collection of listeners.
+     */
+    public List<BoardCellChangeListener> getNotifiers() {
+        return Collections.unmodifiableList(notifiers);
+    }
+
+    /**
+     * Place the mark on the given position.
+     *
+     * @param x    the position x (the row).
+     * @param y    the position y (the column).
+     * @param mark the mark.
+     */
+    public void place(int x, int y, Mark mark) {
+        set(x * geometry.getWidth() + y, mark);
+        for (BoardCellChangeListener notifier : notifiers) {
+            notifier.notifyChanged(x, y, mark);
+        }
+    }
+
+    /**
+     * Place the mark on the empty cell without notifying the listeners. It's undone by
+     * {@link #unmakeMove()}, which is what the search uses instead of cloning the board.
+     *
+     * @param i    the flatted index of an empty cell.
+     * @param mark the mark, A or B.
+     */
+    public void makeMove(int i, Mark mark) {
+        previousLastMoves[madeMoveCount] = lastMove;
+        madeMoves[madeMoveCount] = i;
+        madeMoveCount += 1;
+        set(i, mark);
+    }
+
+    /**
+     * Undo the last move made by {@link #makeMove(int, Mark)}, without notifying the listeners.
+     */
+    public void unmakeMove() {
+        if (madeMoveCount == 0) {
+            throw new IllegalStateException("No move to unmake.");
+        }
+        madeMoveCount -= 1;
+        set(madeMoves[madeMoveCount], NA);
+        lastMove = previousLastMoves[madeMoveCount];
+    }
+
+    /**
+     * Clear all the cells without notifying the listeners, reusing the arrays. The made moves are
+     * forgotten.
+     */
+    public void clear() {
+        Arrays.fill(bitsA, 0);
+        Arrays.fill(bitsB, 0);
+        Arrays.fill(hashes, 0);
+        Arrays.fill(lineCountsA, 0);
+        Arrays.fill(lineCountsB, 0);
+        Arrays.fill(openLinesA, 0);
+        Arrays.fill(openLinesB, 0);
+        openLinesA[0] = openLinesB[0] = geometry.getLineCount();
+        openLineCountA = openLineCountB = geometry.getLineCount();
+        occupied = 0;
+        lastMove = -1;
+        madeMoveCount = 0;
+    }
+
+    /**
+     * Set the cell without notifying the listeners or recording the move, e.g. to decode a board.
+     *
+     * @param i    the flatted index.
+     * @param mark the mark.
+     */
+    void put(int i, Mark mark) {
+        int last = lastMove;
+        set(i, mark);
+        lastMove = last;
+    }
+
+    /**
+     * Copy the cells and the counters of the other board into this one, reusing the arrays if the
+     * geometries are the same. The listeners are not copied and the made moves are forgotten.
+     *
+     * @param other the board to copy.
+     */
+    public void copyFrom(Board other) {
+        if (other.geometry != geometry) {
+            Board empty = new Board(other.geometry);
+            geometry = other.geometry;
+            bitsA = empty.bitsA;
+            bitsB = empty.bitsB;
+            hashes = empty.hashes;
+            lineCountsA = empty.lineCountsA;
+            lineCountsB = empty.lineCountsB;
+            openLinesA = empty.openLinesA;
+            openLinesB = empty.openLinesB;
+            madeMoves = empty.madeMoves;
+            previousLastMoves = empty.previousLastMoves;
+        }
+        System.arraycopy(other.bitsA, 0, bitsA, 0, bitsA.length);
+        System.arraycopy(other.bitsB, 0, bitsB, 0, bitsB.length);
+        System.arraycopy(other.hashes, 0, hashes, 0, hashes.length);
+        System.arraycopy(other.lineCountsA, 0, lineCountsA, 0, lineCountsA.length);
+        System.arraycopy(other.lineCountsB, 0, lineCountsB, 0, lineCountsB.length);
+        System.arraycopy(other.openLinesA, 0, openLinesA, 0, openLinesA.length);
+        System.arraycopy(other.openLinesB, 0, openLinesB, 0, openLinesB.length);
+        occupied = other.occupied;
+        openLineCountA = other.openLineCountA;
+        openLineCountB = other.openLineCountB;
+        lastMove = other.lastMove;
+        madeMoveCount = 0;
+    }
+
+    /**
+     * Set the mark of the cell and update the hashes and the line counters, without notifying the
+     * listeners.
+     *
+     * @param i    the flatted index.
+     * @param mark the mark.
+     */
+    private void set(int i, Mark mark) {
+        int word = i >>> 6;
+        long bit = 1L << i;
+        if ((bitsA[word] & bit) != 0) {
+            bitsA[word] &= ~bit;
+            toggleHashes(i, 0);
+            updateLines(i, lineCountsA, -1);
+            occupied -= 1;
+        } else if ((bitsB[word] & bit) != 0) {
+            bitsB[word] &= ~bit;
+            toggleHashes(i, 1);
+            updateLines(i, lineCountsB, -1);
+            occupied -= 1;
+        }
+        if (mark == A) {
+            bitsA[word] |= bit;
+            toggleHashes(i, 0);
+            updateLines(i, lineCountsA, 1);
+            occupied += 1;
+        } else if (mark == B) {
+            bitsB[word] |= bit;
+            toggleHashes(i, 1);
+            updateLines(i, lineCountsB, 1);
+            occupied += 1;
+        }
+        lastMove = mark == NA ? -1 : i;
+    }
+
+    /**
+     * Add the delta to the counts of the lines through the cell and update the open lines.
+     *
+     * @param i      the flatted index.
+     * @param counts the line counts of the player.
+     * @param delta  1 to add a mark and -1 to remove it.
+     */
+    private void updateLines(int i, int[] counts, int delta) {
+        for (int j = 0; j < geometry.getCellLineCount(i); j++) {
+            int line = geometry.getCellLine(i, j);
+            int a = lineCountsA[line], b = lineCountsB[line];
+            if (b == 0) {
+                openLinesA[a] -= 1;
+                openLineCountA -= 1;
+            }
+            if (a == 0) {
+                openLinesB[b] -= 1;
+                openLineCountB -= 1;
+            }
+            counts[line] += delta;
+            a = lineCountsA[line];
+            b = lineCountsB[line];
+            if (b == 0) {
+                openLinesA[a] += 1;
+                openLineCountA += 1;
+            }
+            if (a == 0) {
+                openLinesB[b] += 1;
+                openLineCountB += 1;
+            }
+        }
+    }
+
+    /**
+     * Place the mark on the given position, using the encapsulated {@link BoardCell} object.
+     *
+     * @see #place(int, int, Mark)
+     * @param pos the cell to replace.
+     */
+    public void place(BoardCell pos) {
+        place(pos.x, pos.y, pos.mark);
+    }
+
+    /**
+     * Toggle the key of the given player on the given cell in the hashes of all symmetries.
+     *
+     * @param i      the flatted index.
+     * @param player 0 for A and 1 for B.
+     */
+    private void toggleHashes(int i, int player) {
+        for (int s = 0; s < hashes.length; s++) {
+            hashes[s] ^= geometry.getZobristKey(player, geometry.transform(s, i));
+        }
+    }
+
+    /**
+     * Get the Zobrist hash of the board.
+     *
+     * @return the hash.
+     */
+    public long getHash() {
+        return hashes[0];
+    }
+
+    /**
+     * Get the Zobrist hash of the board transformed by the given symmetry.
+     *
+     * @param symmetry the symmetry.
+     * @return the hash.
+     * @see BoardGeometry#transform(int, int)
+     */
+    public long getHash(int symmetry) {
+        return hashes[symmetry];
+    }
+
+    /**
+     * Get the symmetry that maps the board to its canonical form, i.e. the one of the minimum
+     * hash. Symmetric boards share the same canonical hash.
+     *
+     * @return the symmetry.
+     */
+    public int getCanonicalSymmetry() {
+        int canonical = 0;
+        for (int s = 1; s < hashes.length; s++) {
+            if (hashes[s] < hashes[canonical]) {
+                canonical = s;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Get the mark on the given position.
+     *
+     * @param x the position x (the row).
+     * @param y the position y (the column).
+     * @return the mark.
+     */
+    public Mark get(int x, int y) {
+        return flat(x * geometry.getWidth() + y);
+    }
+
+    /**
+     * Get the mark according to the flatted index (in row order).
+     *
+     * @param i the index.
+     * @return the mark.
+     */
+    public Mark flat(int i) {
+        long bit = 1L << i;
+        if ((bitsA[i >>> 6] & bit) != 0) {
+            return A;
+        } else if ((bitsB[i >>> 6] & bit) != 0) {
+            return B;
+        } else {
+            return NA;
+        }
+    }
+
+    /**
+     * Get a word of the bit mask of the cells occupied by the given mark. The bit
+     * {@code i % 64} of the word {@code i / 64} stands for the flatted index {@code i}. `NA` maps
+     * to the empty cells.
+     *
+     * @param mark the mark.
+     * @param word the word.
+     * @return the bits.
+     */
+    public long getBits(Mark mark, int word) {
+        if (mark == A) {
+            return bitsA[word];
+        } else if (mark == B) {
+            return bitsB[word];
+        } else {
+            return getEmptyBits(word);
+        }
+    }
+
+    /**
+     * Get the bit mask of the cells occupied by the given mark on a board of at most 64 cells.
+     *
+     * @param mark the mark.
+     * @return the bits.
+     * @see #getBits(Mark, int)
+     */
+    public long getBits(Mark mark) {
+        return getBits(mark, 0);
+    }
+
+    /**
+     * Get a word of the bit mask of the empty cells.
+     *
+     * @param word the word.
+     * @return the bits.
+     */
+    public long getEmptyBits(int word) {
+        long empty = ~(bitsA[word] | bitsB[word]);
+        int rest = geometry.getCells() - (word << 6);
+        return rest >= 64 ? empty : empty & ((1L << rest) - 1);
+    }
+
+    /**
+     * Get the bit mask of the empty cells on a board of at most 64 cells.
+     *
+     * @return the bits.
+     * @see #getEmptyBits(int)
+     */
+    public long getEmptyBits() {
+        return getEmptyBits(0);
+    }
+
+    /**
+     * Write the flatted indices of the empty cells, i.e. the legal moves, into the buffer in row
+     * order. It doesn't allocate, so the search reuses the buffers instead of iterating the cells.
+     *
+     * @param moves the buffer, at least as long as the empty cells.
+     * @return the number of the moves written.
+     */
+    public int getEmptyCells(int[] moves) {
+        int count = 0;
+        for (int word = 0; word < bitsA.length; word++) {
+            long empty = getEmptyBits(word);
+            while (empty != 0) {
+                moves[count] = (word << 6) + Long.numberOfTrailingZeros(empty);
+                empty &= empty - 1;
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of the empty cells.
+     *
+     * @return the number of the empty cells.
+     */
+    public int getEmptyCount() {
+        return geometry.getCells() - occupied;
+    }
+
+    /**
+     * Check whether the given mark has occupied a whole line.
+     *
+     * @param mark the mark of the player.
+     * @return true if the player wins.
+     */
+    public boolean hasWon(Mark mark) {
+        int[] openLines = mark == A ? openLinesA : openLinesB;
+        return openLines[geometry.getWinLength()] > 0;
+    }
+
+    /**
+     * Check whether the last placed mark has completed a line. Only the lines through the last
+     * move are checked.
+     *
+     * @return true if the last move wins.
+     */
+    public boolean isLastMoveWinning() {
+        if (lastMove < 0) {
+            return false;
+        }
+        int[] counts = flat(lastMove) == A ? lineCountsA : lineCountsB;
+        for (int j = 0; j < geometry.getCellLineCount(lastMove); j++) {
+            if (counts[geometry.getCellLine(lastMove, j)] == geometry.getWinLength()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the flatted index of the last placed mark.
+     *
+     * @return the index, or -1 if the last placement cleared a cell or nothing is placed.
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Get the number of the marks of the player on the line.
+     *
+     * @param mark the mark of the player.
+     * @param line the line of the geometry.
+     * @return the number of the marks.
+     */
+    public int getLineMarkCount(Mark mark, int line) {
+        return mark == A ? lineCountsA[line] : lineCountsB[line];
+    }
+
+    /**
+     * Get the number of the lines without any opponent mark, i.e. the chances to win.
+     *
+     * @param mark the mark of the player.
+     * @return the number of the open lines.
+     */
+    public int getOpenLineCount(Mark mark) {
+        return mark == A ? openLineCountA : openLineCountB;
+    }
+
+    /**
+     * Get the minimum marks to place to complete a line. It's the win length if all the lines are
+     * blocked by the opponent, and 0 if the player has won.
+     *
+     * @param mark the mark of the player.
+     * @return the minimum steps.
+     */
+    public int getMinimumStepsToWin(Mark mark) {
+        int[] openLines = mark == A ? openLinesA : openLinesB;
+        for (int count = geometry.getWinLength(); count > 0; count--) {
+            if (openLines[count] > 0) {
+                return geometry.getWinLength() - count;
+            }
+        }
+        return geometry.getWinLength();
+    }
+
+    /**
+     * Check whether all the cells are occupied.
+     *
+     * @return true if the board is full.
+     */
+    public boolean isFull() {
+        return occupied == geometry.getCells();
+    }
+
+    /**
+     * Get the status of the game.
+     *
+     * @return the status.
+     */
+    public Status getStatus() {
+        if (hasWon(A)) {
+            return Status.A_WIN;
+        } else if (hasWon(B)) {
+            return Status.B_WIN;
+        } else if (isFull()) {
+            return Status.END;
+        }
+        return Status.RUNNING;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<BoardCell> iterator() {
+        return new BoardCellIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Board clone() {
+        Board cloned = new Board(geometry);
+        cloned.copyFrom(this);
+        return cloned;
+    }
+
+    /**
+     * Write the geometry and the cells packed by {@link PositionCodec}, instead of the fields.
+     *
+     * @serialData the width, the height and the win length as unsigned bytes, then the cells in
+     * 2 bits each.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeByte(geometry.getWidth());
+        out.writeByte(geometry.getHeight());
+        out.writeByte(geometry.getWinLength());
+        byte[] cells = new byte[PositionCodec.getEncodedLength(geometry)];
+        PositionCodec.encode(this, cells, 0);
+        out.write(cells);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        BoardGeometry decoded = BoardGeometry.of(in.readUnsignedByte(), in.readUnsignedByte(),
+                in.readUnsignedByte());
+        byte[] cells = new byte[PositionCodec.getEncodedLength(decoded)];
+        in.readFully(cells);
+        Board board = new Board(decoded);
+        PositionCodec.decode(cells, 0, board);
+        notifiers = new ArrayList<>();
+        copyFrom(board);
+    }
+
+}
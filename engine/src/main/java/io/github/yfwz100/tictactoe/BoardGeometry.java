@@ -0,0 +1,289 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The geometry of a m,n,k game: the size of the board and the number of marks in a row to win.
+ * The win lines, symmetries and Zobrist keys are enumerated once per geometry and cached, so the
+ * boards of the same geometry share them.
+ *
+ * @author yfwz100
+ */
+public final class BoardGeometry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The maximum number of cells, so that a cell fits in a byte with a spare value.
+     */
+    public static final int MAX_CELLS = 255;
+
+    private static final ConcurrentMap<Integer, BoardGeometry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The geometry of the classic 3x3 game.
+     */
+    public static final BoardGeometry STANDARD = of(3, 3, 3);
+
+    private final int width;
+    private final int height;
+    private final int winLength;
+
+    private final transient int cells;
+    private final transient int words;
+    private final transient int lineCount;
+    private final transient int[] lineCells;
+    private final transient long[] lineMasks;
+    private final transient int[] cellLineStart;
+    private final transient int[] cellLines;
+    private final transient int[][] transforms;
+    private final transient int[][] inverseTransforms;
+    private final transient long[][] zobrist;
+
+    /**
+     * Get the geometry of the given size.
+     *
+     * @param width     the number of columns.
+     * @param height    the number of rows.
+     * @param winLength the number of marks in a row to win.
+     * @return the shared geometry.
+     */
+    public static BoardGeometry of(int width, int height, int winLength) {
+        if (width < 1 || height < 1 || width * height > MAX_CELLS) {
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+        }
+        if (winLength < 1 || winLength > Math.max(width, height)) {
+            throw new IllegalArgumentException("Unsupported win length " + winLength);
+        }
+        Integer key = (width << 16) | (height << 8) | winLength;
+        BoardGeometry geometry = cache.get(key);
+        if (geometry == null) {
+            BoardGeometry created = new BoardGeometry(width, height, winLength);
+            geometry = cache.putIfAbsent(key, created);
+            if (geometry == null) {
+                geometry = created;
+            }
+        }
+        return geometry;
+    }
+
+    private BoardGeometry(int width, int height, int winLength) {
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.cells = width * height;
+        this.words = (cells + 63) / 64;
+
+        // Enumerate the lines: rows, columns, diagonals and anti-diagonals.
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        int count = 0;
+        int[] starts = new int[cells * directions.length * 2];
+        for (int[] d : directions) {
+            for (int x = 0; x < height; x++) {
+                for (int y = 0; y < width; y++) {
+                    int endX = x + d[0] * (winLength - 1), endY = y + d[1] * (winLength - 1);
+                    if (endX < height && endY >= 0 && endY < width) {
+                        starts[count * 2] = x * width + y;
+                        starts[count * 2 + 1] = d[0] * width + d[1];
+                        count += 1;
+                    }
+                }
+            }
+            if (winLength == 1) {
+                // A single cell is the same line in any direction.
+                break;
+            }
+        }
+        this.lineCount = count;
+        this.lineCells = new int[count * winLength];
+        this.lineMasks = new long[count * words];
+        int[] cellLineCount = new int[cells];
+        for (int line = 0; line < count; line++) {
+            for (int j = 0; j < winLength; j++) {
+                int cell = starts[line * 2] + j * starts[line * 2 + 1];
+                lineCells[line * winLength + j] = cell;
+                lineMasks[line * words + cell / 64] |= 1L << cell;
+                cellLineCount[cell] += 1;
+            }
+        }
+        this.cellLineStart = new int[cells + 1];
+        for (int i = 0; i < cells; i++) {
+            cellLineStart[i + 1] = cellLineStart[i] + cellLineCount[i];
+        }
+        this.cellLines = new int[cellLineStart[cells]];
+        int[] filled = new int[cells];
+        for (int line = 0; line < count; line++) {
+            for (int j = 0; j < winLength; j++) {
+                int cell = lineCells[line * winLength + j];
+                cellLines[cellLineStart[cell] + filled[cell]] = line;
+                filled[cell] += 1;
+            }
+        }
+
+        // The square board has 4 rotations and 4 reflections, the others only keep 4 of them.
+        int symmetries = width == height ? 8 : 4;
+        this.transforms = new int[symmetries][cells];
+        this.inverseTransforms = new int[symmetries][cells];
+        int mx = height - 1, my = width - 1;
+        for (int i = 0; i < cells; i++) {
+            int x = i / width, y = i % width;
+            int[][] images;
+            if (width == height) {
+                images = new int[][]{
+                        {x, y}, {y, mx - x}, {mx - x, my - y}, {my - y, x},
+                        {x, my - y}, {mx - x, y}, {y, x}, {my - y, mx - x}
+                };
+            } else {
+                images = new int[][]{{x, y}, {mx - x, my - y}, {x, my - y}, {mx - x, y}};
+            }
+            for (int s = 0; s < symmetries; s++) {
+                int j = images[s][0] * width + images[s][1];
+                transforms[s][i] = j;
+                inverseTransforms[s][j] = i;
+            }
+        }
+
+        // The seed is fixed so that the hashes are reproducible across runs, and differs by the
+        // geometry so that the positions of different geometries don't share the hashes.
+        long size = (width << 16) | (height << 8) | winLength;
+        Random random = new Random(0x7ac7ac7aL ^ (size << 32));
+        this.zobrist = new long[2][cells];
+        for (long[] keys : zobrist) {
+            for (int i = 0; i < cells; i++) {
+                keys[i] = random.nextLong();
+            }
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return of(width, height, winLength);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * Get the number of 64-bit words of a bit mask of the cells.
+     *
+     * @return the number of words.
+     */
+    public int getWords() {
+        return words;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get the flatted index of a cell on the line.
+     *
+     * @param line the line.
+     * @param j    the offset on the line, less than the win length.
+     * @return the flatted index.
+     */
+    public int getLineCell(int line, int j) {
+        return lineCells[line * winLength + j];
+    }
+
+    /**
+     * Get a word of the bit mask of the line.
+     *
+     * @param line the line.
+     * @param word the word.
+     * @return the bits.
+     */
+    public long getLineMask(int line, int word) {
+        return lineMasks[line * words + word];
+    }
+
+    /**
+     * Get the number of lines through the cell.
+     *
+     * @param i the flatted index.
+     * @return the number of lines.
+     */
+    public int getCellLineCount(int i) {
+        return cellLineStart[i + 1] - cellLineStart[i];
+    }
+
+    /**
+     * Get a line through the cell.
+     *
+     * @param i the flatted index.
+     * @param j the j-th line, less than {@link #getCellLineCount(int)}.
+     * @return the line.
+     */
+    public int getCellLine(int i, int j) {
+        return cellLines[cellLineStart[i] + j];
+    }
+
+    /**
+     * Get the number of symmetries, 8 for the square board and 4 for the others.
+     *
+     * @return the number of symmetries.
+     */
+    public int getSymmetryCount() {
+        return transforms.length;
+    }
+
+    /**
+     * Map the flatted index by the given symmetry. The symmetry 0 is the identity.
+     *
+     * @param symmetry the symmetry.
+     * @param i        the flatted index.
+     * @return the transformed index.
+     */
+    public int transform(int symmetry, int i) {
+        return transforms[symmetry][i];
+    }
+
+    /**
+     * Map the transformed index back by the given symmetry.
+     *
+     * @param symmetry the symmetry.
+     * @param i        the transformed index.
+     * @return the original flatted index.
+     * @see #transform(int, int)
+     */
+    public int inverseTransform(int symmetry, int i) {
+        return inverseTransforms[symmetry][i];
+    }
+
+    /**
+     * Get the Zobrist key of the player on the cell.
+     *
+     * @param player 0 for A and 1 for B.
+     * @param i      the flatted index.
+     * @return the key.
+     */
+    public long getZobristKey(int player, int i) {
+        return zobrist[player][i];
+    }
+
+    @Override
+    public String toString() {
+        return "BoardGeometry{" +
+                "width=" + width +
+                ", height=" + height +
+                ", winLength=" + winLength +
+                '}';
+    }
+}
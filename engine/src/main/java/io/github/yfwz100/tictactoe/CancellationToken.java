@@ -0,0 +1,23 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The token to cancel a running search. The search checks it regularly and returns the best
+ * choice found so far once it's cancelled.
+ *
+ * @author yfwz100
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Cancel the search holding the token.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The game values of all the positions of a small board, solved by {@link RetrogradeSolver}. The
+ * state of a position is {@code 2 * index + side}, where the index is the base-3 index of the
+ * board (0 for empty, 1 for A and 2 for B, the first cell lowest) and the side is 1 if B is to
+ * move. Each state takes 2 bits, the value for the player to move as in {@link PerfectPlayTable},
+ * so 4x4 boards take 21 MB. The values may be kept in the heap, off the heap or in a file mapped
+ * into memory.
+ * <p>
+ * The buffer starts with a header of 4 ints: the magic, the version, the geometry and 1 if the
+ * values are solved.
+ *
+ * @author yfwz100
+ * @see Agent#setEndgameDatabase(EndgameDatabase)
+ */
+public class EndgameDatabase {
+
+    /**
+     * The maximum number of cells, so the values fit one buffer.
+     */
+    public static final int MAX_CELLS = 20;
+
+    static final int MAGIC = 0x54544544; // "TTED"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private static final int SOLVED_OFFSET = 12;
+
+    private final BoardGeometry geometry;
+    private final ByteBuffer buffer;
+    private final long[] powers;
+
+    private EndgameDatabase(BoardGeometry geometry, ByteBuffer buffer) {
+        this.geometry = geometry;
+        this.buffer = buffer;
+        this.powers = new long[geometry.getCells() + 1];
+        powers[0] = 1;
+        for (int i = 1; i < powers.length; i++) {
+            powers[i] = powers[i - 1] * 3;
+        }
+    }
+
+    /**
+     * Allocate the database in the heap.
+     *
+     * @param geometry the geometry of the board.
+     * @return the empty database.
+     */
+    public static EndgameDatabase allocate(BoardGeometry geometry) {
+        return create(geometry, ByteBuffer.allocate(getSize(geometry)));
+    }
+
+    /**
+     * Allocate the database off the heap.
+     *
+     * @param geometry the geometry of the board.
+     * @return the empty database.
+     */
+    public static EndgameDatabase allocateDirect(BoardGeometry geometry) {
+        return create(geometry, ByteBuffer.allocateDirect(getSize(geometry)));
+    }
+
+    /**
+     * Map the database file into memory, creating it if it doesn't exist. A solved file can be
+     * used right away, and an empty one is filled in place by the solver.
+     *
+     * @param file     the database file.
+     * @param geometry the geometry of the board.
+     * @return the database.
+     * @throws IOException if the file can't be mapped or is of another board.
+     */
+    public static EndgameDatabase map(File file, BoardGeometry geometry) throws IOException {
+        int size = getSize(geometry);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            boolean exists = raf.length() > 0;
+            if (exists && raf.length() != size) {
+                throw new IOException("Mismatched database " + file);
+            }
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (!exists) {
+                return create(geometry, buffer);
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != encode(geometry)) {
+                throw new IOException("Mismatched database " + file);
+            }
+            return new EndgameDatabase(geometry, buffer);
+        } finally {
+            // The mapping stays valid after the file is closed.
+            raf.close();
+        }
+    }
+
+    private static EndgameDatabase create(BoardGeometry geometry, ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, encode(geometry));
+        buffer.putInt(SOLVED_OFFSET, 0);
+        return new EndgameDatabase(geometry, buffer);
+    }
+
+    private static int encode(BoardGeometry geometry) {
+        return geometry.getWidth() << 16 | geometry.getHeight() << 8 | geometry.getWinLength();
+    }
+
+    /**
+     * Get the number of the states of the board, i.e. 2 times 3 to the power of the cells.
+     *
+     * @param geometry the geometry of the board.
+     * @return the number of the states.
+     */
+    public static long getStateCount(BoardGeometry geometry) {
+        if (geometry.getCells() > MAX_CELLS) {
+            throw new IllegalArgumentException("Too many cells for the database: " + geometry);
+        }
+        long count = 2;
+        for (int i = 0; i < geometry.getCells(); i++) {
+            count *= 3;
+        }
+        return count;
+    }
+
+    private static int getSize(BoardGeometry geometry) {
+        return (int) (HEADER_SIZE + (getStateCount(geometry) + 3) / 4);
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Check if the values are all solved.
+     *
+     * @return true if it's solved.
+     */
+    public boolean isSolved() {
+        return buffer.getInt(SOLVED_OFFSET) != 0;
+    }
+
+    void setSolved() {
+        buffer.putInt(SOLVED_OFFSET, 1);
+    }
+
+    /**
+     * Get the state of the board.
+     *
+     * @param board the board of the geometry.
+     * @param mark  the mark of the player to move.
+     * @return the state.
+     */
+    public long stateOf(Board board, Board.Mark mark) {
+        long index = 0;
+        for (int i = 0; i < powers.length - 1; i++) {
+            Board.Mark cell = board.flat(i);
+            if (cell == Board.Mark.A) {
+                index += powers[i];
+            } else if (cell == Board.Mark.B) {
+                index += 2 * powers[i];
+            }
+        }
+        return 2 * index + (mark == Board.Mark.B ? 1 : 0);
+    }
+
+    /**
+     * Get the state after a move, i.e. the move placed and the other side to move.
+     *
+     * @param state the state.
+     * @param move  the flatted index of the empty cell.
+     * @return the state after the move.
+     */
+    public long after(long state, int move) {
+        boolean b = (state & 1) != 0;
+        return state + 2 * powers[move] * (b ? 2 : 1) + (b ? -1 : 1);
+    }
+
+    /**
+     * Get the value of the board for the player to move.
+     *
+     * @param board the board of the geometry.
+     * @param mark  the mark of the player to move.
+     * @return the value, one of {@link PerfectPlayTable#UNKNOWN}, {@link PerfectPlayTable#LOSS},
+     * {@link PerfectPlayTable#DRAW} and {@link PerfectPlayTable#WIN}.
+     */
+    public int getValue(Board board, Board.Mark mark) {
+        return get(stateOf(board, mark));
+    }
+
+    /**
+     * Get the value of the state.
+     *
+     * @param state the state.
+     * @return the value for the player to move.
+     */
+    public int get(long state) {
+        int b = buffer.get(HEADER_SIZE + (int) (state >>> 2));
+        return (b >>> ((int) (state & 3) << 1)) & 3;
+    }
+
+    void set(long state, int value) {
+        int offset = HEADER_SIZE + (int) (state >>> 2);
+        int shift = (int) (state & 3) << 1;
+        int b = buffer.get(offset);
+        buffer.put(offset, (byte) ((b & ~(3 << shift)) | (value << shift)));
+    }
+}
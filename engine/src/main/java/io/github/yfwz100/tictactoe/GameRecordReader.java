@@ -0,0 +1,118 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the games written by {@link GameRecordWriter}, one at a time into the caller's buffer,
+ * so reading doesn't allocate per game.
+ *
+ * @author yfwz100
+ */
+public class GameRecordReader implements Closeable {
+
+    private final InputStream in;
+    private final BoardGeometry geometry;
+    private Board.Mark firstMover = Board.Mark.NA;
+
+    /**
+     * Construct the reader and read the header.
+     *
+     * @param in the stream to read from, closed by {@link #close()}.
+     * @throws IOException if the header is missing or not supported.
+     */
+    public GameRecordReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in);
+        int magic = (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        if (magic != GameRecordWriter.MAGIC) {
+            throw new IOException("Not a game record.");
+        }
+        int version = readByte();
+        if (version != GameRecordWriter.VERSION) {
+            throw new IOException("Unsupported game record version " + version);
+        }
+        try {
+            this.geometry = BoardGeometry.of(readByte(), readByte(), readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Illegal geometry of the game record.", e);
+        }
+    }
+
+    /**
+     * Get the geometry of the games.
+     *
+     * @return the geometry.
+     */
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Get the mark of the player who moves first in the last read game.
+     *
+     * @return the mark.
+     */
+    public Board.Mark getFirstMover() {
+        return firstMover;
+    }
+
+    /**
+     * Read the next game.
+     *
+     * @param moves the buffer of the moves, at least as long as the cells of the geometry.
+     * @return the number of the moves, or -1 if there's no more game.
+     * @throws IOException if the game is truncated or illegal.
+     */
+    public int readGame(int[] moves) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return -1;
+        }
+        int header = first & 0x7f;
+        for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+            first = readByte();
+            header |= (first & 0x7f) << shift;
+        }
+        int count = header >>> 1;
+        int cells = geometry.getCells();
+        if (count > cells) {
+            throw new IOException("Illegal number of moves " + count);
+        }
+        firstMover = (header & 1) != 0 ? Board.Mark.B : Board.Mark.A;
+        if (cells <= 16) {
+            for (int j = 0; j < count; j += 2) {
+                int packed = readByte();
+                moves[j] = packed & 0xf;
+                if (j + 1 < count) {
+                    moves[j + 1] = packed >>> 4;
+                }
+            }
+        } else {
+            for (int j = 0; j < count; j++) {
+                moves[j] = readByte();
+            }
+        }
+        for (int j = 0; j < count; j++) {
+            if (moves[j] >= cells) {
+                throw new IOException("Illegal move " + moves[j]);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated game record.");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the games as the lists of moves, for storing many games of one geometry. The stream
+ * starts with the header (the magic, the version, the width, the height and the win length),
+ * followed by the games. A game is a varint of the number of moves shifted left by 1 with the
+ * bit 0 set if B moves first, followed by the flatted indices of the moves: two per byte (the low
+ * nibble first) if the board has at most 16 cells, or one per byte otherwise. So a 3x3 game takes
+ * at most 6 bytes.
+ *
+ * @author yfwz100
+ * @see GameRecordReader
+ */
+public class GameRecordWriter implements Closeable, Flushable {
+
+    static final int MAGIC = 0x54544752;
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+    private final int cells;
+    private long games = 0;
+
+    /**
+     * Construct the writer and write the header.
+     *
+     * @param out      the stream to write to, closed by {@link #close()}.
+     * @param geometry the geometry of the games.
+     * @throws IOException if the header can't be written.
+     */
+    public GameRecordWriter(OutputStream out, BoardGeometry geometry) throws IOException {
+        this.out = new BufferedOutputStream(out);
+        this.cells = geometry.getCells();
+        writeInt(MAGIC);
+        this.out.write(VERSION);
+        this.out.write(geometry.getWidth());
+        this.out.write(geometry.getHeight());
+        this.out.write(geometry.getWinLength());
+    }
+
+    /**
+     * Write a game.
+     *
+     * @param first the mark of the player who moves first.
+     * @param moves the flatted indices of the moves in order.
+     * @param count the number of the moves.
+     * @throws IOException if the game can't be written.
+     */
+    public void writeGame(Board.Mark first, int[] moves, int count) throws IOException {
+        if (count < 0 || count > cells) {
+            throw new IllegalArgumentException("Illegal number of moves " + count);
+        }
+        for (int j = 0; j < count; j++) {
+            if (moves[j] < 0 || moves[j] >= cells) {
+                throw new IllegalArgumentException("Illegal move " + moves[j]);
+            }
+        }
+        writeVarInt((count << 1) | (first == Board.Mark.B ? 1 : 0));
+        if (cells <= 16) {
+            for (int j = 0; j < count; j += 2) {
+                int high = j + 1 < count ? moves[j + 1] : 0;
+                out.write(moves[j] | (high << 4));
+            }
+        } else {
+            for (int j = 0; j < count; j++) {
+                out.write(moves[j]);
+            }
+        }
+        games += 1;
+    }
+
+    /**
+     * Get the number of the games written.
+     *
+     * @return the number of the games.
+     */
+    public long getGameCount() {
+        return games;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
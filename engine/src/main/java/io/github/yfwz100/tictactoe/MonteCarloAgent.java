@@ -0,0 +1,467 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The Monte Carlo tree search (UCT) agent, an alternative to {@link Agent} for the large boards
+ * where the fixed-depth search doesn't scale. The nodes of the tree are kept in preallocated
+ * primitive arrays, and the playouts are random moves made and unmade on one board.
+ * <p>
+ * The agent follows the game if it's registered on the board by
+ * {@link Board#addCellNotifier(Board.BoardCellChangeListener)}: every move placed on the board
+ * moves the root to the matching child, so the subtree searched before is reused by the next
+ * search. It's not thread-safe; each game has its own agent.
+ *
+ * @author yfwz100
+ */
+public class MonteCarloAgent implements Board.BoardCellChangeListener {
+
+    /**
+     * The default number of nodes of the tree.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private static final int NO_CHILD = -1;
+
+    /**
+     * The number of iterations between two checks of the time budget.
+     */
+    private static final int CHECK_INTERVAL = 256;
+
+    private final int capacity;
+
+    /**
+     * The nodes: the move into the node, the number of visits, the score in half points of the
+     * player who made the move, and the contiguous block of the children. The node 0 is the root.
+     */
+    private int[] moves;
+    private int[] visits;
+    private int[] scores;
+    private int[] firstChildren;
+    private short[] childCounts;
+    private int size;
+
+    /**
+     * The spare arrays to copy the reused subtree into, swapped with the nodes.
+     */
+    private int[] spareMoves;
+    private int[] spareVisits;
+    private int[] spareScores;
+    private int[] spareFirstChildren;
+    private short[] spareChildCounts;
+    private int[] origins;
+
+    /**
+     * The position of the root and the mark to move there, or null if there's no tree.
+     */
+    private Board root;
+    private Board.Mark rootMover;
+
+    private int[] path = new int[0];
+    private int[] buffer = new int[0];
+    private long seed = System.nanoTime();
+
+    private int iterations = 10000;
+    private long timeMillis = 0;
+
+    private long lastPlayouts;
+    private long lastNanos;
+
+    /**
+     * Construct the agent with the default capacity.
+     */
+    public MonteCarloAgent() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct the agent.
+     *
+     * @param capacity the maximum number of the nodes of the tree.
+     */
+    public MonteCarloAgent(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.moves = new int[capacity];
+        this.visits = new int[capacity];
+        this.scores = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.childCounts = new short[capacity];
+        this.spareMoves = new int[capacity];
+        this.spareVisits = new int[capacity];
+        this.spareScores = new int[capacity];
+        this.spareFirstChildren = new int[capacity];
+        this.spareChildCounts = new short[capacity];
+        this.origins = new int[capacity];
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Set the number of iterations of a search.
+     *
+     * @param iterations the number of iterations, 0 or less for no limit.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Set the wall-clock budget of a search.
+     *
+     * @param timeMillis the budget in milliseconds, 0 or less for no limit.
+     */
+    public void setTimeMillis(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * Set the seed of the playouts, so the searches can be repeated.
+     *
+     * @param seed the seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed != 0 ? seed : 1;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of nodes of the tree.
+     *
+     * @return the number of nodes.
+     */
+    public int getNodeCount() {
+        return size;
+    }
+
+    /**
+     * Get the visits of the root, which are kept from the former searches if the subtree is
+     * reused.
+     *
+     * @return the visits of the root.
+     */
+    public int getRootVisits() {
+        return size > 0 ? visits[0] : 0;
+    }
+
+    /**
+     * Get the number of playouts of the last search.
+     *
+     * @return the number of playouts.
+     */
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    /**
+     * Get the playouts per second of the last search.
+     *
+     * @return the playouts per second.
+     */
+    public double getPlayoutsPerSecond() {
+        return lastNanos > 0 ? lastPlayouts * 1e9 / lastNanos : 0;
+    }
+
+    /**
+     * Get the best choice of the player, the most visited move of the root. The utility of the
+     * choice is the expected score of the move in per mille, from -1000 (lost) to 1000 (won).
+     *
+     * @param board the board of the game, not modified.
+     * @param mark  the mark of the player.
+     * @return the choice, or null if the game is over.
+     */
+    public Agent.Choice getBestChoice(Board board, Board.Mark mark) {
+        if (board.getStatus() != Board.Status.RUNNING) {
+            return null;
+        }
+        if (!isAt(board, mark)) {
+            reset(board, mark);
+        }
+        int cells = root.getGeometry().getCells();
+        if (path.length <= cells) {
+            path = new int[cells + 1];
+            buffer = new int[cells];
+        }
+        if (firstChildren[0] == NO_CHILD && !expand(0)) {
+            throw new IllegalStateException("The capacity is too small for the board.");
+        }
+        int limit = iterations > 0 || timeMillis > 0 ? iterations : 10000;
+        long budget = timeMillis > 0 ? timeMillis * 1000000L : Long.MAX_VALUE;
+        long start = System.nanoTime();
+        long playouts = 0;
+        while (limit <= 0 || playouts < limit) {
+            if (playouts % CHECK_INTERVAL == 0 && playouts > 0
+                    && System.nanoTime() - start > budget) {
+                break;
+            }
+            iterate();
+            playouts += 1;
+        }
+        lastNanos = System.nanoTime() - start;
+        lastPlayouts = playouts;
+
+        int best = NO_CHILD;
+        int first = firstChildren[0];
+        for (int c = first; c < first + childCounts[0]; c++) {
+            if (best == NO_CHILD || visits[c] > visits[best]) {
+                best = c;
+            }
+        }
+        int width = root.getGeometry().getWidth();
+        int utility = 0;
+        if (visits[best] > 0) {
+            utility = (int) ((long) scores[best] * 1000 / visits[best]) - 1000;
+        }
+        return new Agent.Choice(moves[best] / width, moves[best] % width, utility);
+    }
+
+    /**
+     * Move the root to the child of the placed move, or drop the tree if the move doesn't follow
+     * the root.
+     */
+    @Override
+    public void notifyChanged(int x, int y, Board.Mark mark) {
+        if (root == null) {
+            return;
+        }
+        int i = x * root.getGeometry().getWidth() + y;
+        if (mark != rootMover || root.flat(i) != Board.Mark.NA) {
+            root = null;
+            size = 0;
+            return;
+        }
+        root.makeMove(i, mark);
+        rootMover = mark.getOpponent();
+        int child = NO_CHILD;
+        int first = firstChildren[0];
+        for (int c = first; first != NO_CHILD && c < first + childCounts[0]; c++) {
+            if (moves[c] == i) {
+                child = c;
+                break;
+            }
+        }
+        if (child == NO_CHILD) {
+            clearTree();
+        } else {
+            reroot(child);
+        }
+    }
+
+    /**
+     * Run one iteration: select the path by UCT, expand the leaf, play out and back up the
+     * result.
+     */
+    private void iterate() {
+        Board board = root;
+        Board.Mark mark = rootMover;
+        Board.Mark winner = Board.Mark.NA;
+        boolean over = false;
+        int node = 0;
+        int length = 0;
+        path[length++] = node;
+        while (!over) {
+            if (firstChildren[node] == NO_CHILD && (visits[node] == 0 || !expand(node))) {
+                break;
+            }
+            node = select(node);
+            board.makeMove(moves[node], mark);
+            path[length++] = node;
+            if (board.isLastMoveWinning()) {
+                winner = mark;
+                over = true;
+            } else {
+                over = board.isFull();
+            }
+            mark = mark.getOpponent();
+        }
+        if (!over) {
+            winner = playout(board, mark);
+        }
+        for (int j = length - 1; j >= 0; j--) {
+            int n = path[j];
+            visits[n] += 1;
+            if (winner == Board.Mark.NA) {
+                scores[n] += 1;
+            } else if ((j % 2 == 1) == (winner == rootMover)) {
+                // The node at an odd depth is made by the mover of the root.
+                scores[n] += 2;
+            }
+        }
+        for (int j = 1; j < length; j++) {
+            board.unmakeMove();
+        }
+    }
+
+    /**
+     * Select the child to visit: an unvisited one if any, or the one of the best UCT value.
+     */
+    private int select(int node) {
+        int first = firstChildren[node];
+        int count = childCounts[node];
+        double logVisits = Math.log(visits[node]);
+        int offset = nextInt(count);
+        int best = first;
+        double bestValue = -1;
+        for (int j = 0; j < count; j++) {
+            int c = first + (offset + j) % count;
+            int n = visits[c];
+            if (n == 0) {
+                return c;
+            }
+            double value = scores[c] / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Add the children of the node for the empty cells of the board.
+     *
+     * @return false if the tree is full.
+     */
+    private boolean expand(int node) {
+        int count = root.getEmptyCells(buffer);
+        if (size + count > capacity) {
+            return false;
+        }
+        firstChildren[node] = size;
+        childCounts[node] = (short) count;
+        for (int j = 0; j < count; j++) {
+            moves[size] = buffer[j];
+            visits[size] = 0;
+            scores[size] = 0;
+            firstChildren[size] = NO_CHILD;
+            childCounts[size] = 0;
+            size += 1;
+        }
+        return true;
+    }
+
+    /**
+     * Play random moves until the game is over, then undo them.
+     *
+     * @return the winner, or NA for a draw.
+     */
+    private Board.Mark playout(Board board, Board.Mark mark) {
+        int count = board.getEmptyCells(buffer);
+        int made = 0;
+        Board.Mark winner = Board.Mark.NA;
+        while (count > 0) {
+            int r = nextInt(count);
+            int i = buffer[r];
+            buffer[r] = buffer[--count];
+            board.makeMove(i, mark);
+            made += 1;
+            if (board.isLastMoveWinning()) {
+                winner = mark;
+                break;
+            }
+            mark = mark.getOpponent();
+        }
+        for (; made > 0; made--) {
+            board.unmakeMove();
+        }
+        return winner;
+    }
+
+    /**
+     * Copy the subtree of the child of the root into the spare arrays in breadth-first order, so
+     * it becomes the whole tree.
+     */
+    private void reroot(int child) {
+        copyNode(child, 0);
+        int copied = 1;
+        for (int q = 0; q < copied; q++) {
+            int first = firstChildren[origins[q]];
+            if (first == NO_CHILD) {
+                continue;
+            }
+            spareFirstChildren[q] = copied;
+            for (int c = first; c < first + childCounts[origins[q]]; c++) {
+                copyNode(c, copied++);
+            }
+        }
+        size = copied;
+
+        int[] ints = moves;
+        moves = spareMoves;
+        spareMoves = ints;
+        ints = visits;
+        visits = spareVisits;
+        spareVisits = ints;
+        ints = scores;
+        scores = spareScores;
+        spareScores = ints;
+        ints = firstChildren;
+        firstChildren = spareFirstChildren;
+        spareFirstChildren = ints;
+        short[] shorts = childCounts;
+        childCounts = spareChildCounts;
+        spareChildCounts = shorts;
+    }
+
+    private void copyNode(int from, int to) {
+        origins[to] = from;
+        spareMoves[to] = moves[from];
+        spareVisits[to] = visits[from];
+        spareScores[to] = scores[from];
+        spareFirstChildren[to] = NO_CHILD;
+        spareChildCounts[to] = childCounts[from];
+    }
+
+    private boolean isAt(Board board, Board.Mark mark) {
+        if (root == null || root.getGeometry() != board.getGeometry() || rootMover != mark) {
+            return false;
+        }
+        for (int word = 0; word < board.getGeometry().getWords(); word++) {
+            if (root.getBits(Board.Mark.A, word) != board.getBits(Board.Mark.A, word)
+                    || root.getBits(Board.Mark.B, word) != board.getBits(Board.Mark.B, word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reset(Board board, Board.Mark mark) {
+        if (root == null || root.getGeometry() != board.getGeometry()) {
+            root = new Board(board.getGeometry());
+        }
+        root.copyFrom(board);
+        rootMover = mark;
+        clearTree();
+    }
+
+    private void clearTree() {
+        moves[0] = -1;
+        visits[0] = 0;
+        scores[0] = 0;
+        firstChildren[0] = NO_CHILD;
+        childCounts[0] = 0;
+        size = 1;
+    }
+
+    /**
+     * Get the next random number in [0, bound) by xorshift, which is cheaper than
+     * {@link java.util.Random} in the playouts.
+     */
+    private int nextInt(int bound) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) ((seed >>> 33) % bound);
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The 3x3 position packed in one int: the bits 0-8 are the cells of A, the bits 9-17 are the
+ * cells of B (in row order) and the bit 18 is set if B is to move. The batches of positions are
+ * kept in plain int arrays, e.g. for {@link Agent#getBestMoves(int[], int)}.
+ *
+ * @author yfwz100
+ */
+public final class PackedPosition {
+
+    /**
+     * The number of cells of the packed board.
+     */
+    public static final int CELLS = 9;
+
+    private static final int MASK = (1 << CELLS) - 1;
+    private static final int B_TO_MOVE = 1 << (2 * CELLS);
+
+    private PackedPosition() {
+    }
+
+    /**
+     * Pack the 3x3 board.
+     *
+     * @param board the board.
+     * @param mark  the mark of the player to move.
+     * @return the packed position.
+     */
+    public static int pack(Board board, Board.Mark mark) {
+        if (board.getGeometry() != BoardGeometry.STANDARD) {
+            throw new IllegalArgumentException("Only the 3x3 board can be packed.");
+        }
+        return pack((int) board.getBits(Board.Mark.A), (int) board.getBits(Board.Mark.B), mark);
+    }
+
+    /**
+     * Pack the position given by the bit masks.
+     *
+     * @param bitsA the cells of A.
+     * @param bitsB the cells of B.
+     * @param mark  the mark of the player to move.
+     * @return the packed position.
+     */
+    public static int pack(int bitsA, int bitsB, Board.Mark mark) {
+        return bitsA | (bitsB << CELLS) | (mark == Board.Mark.B ? B_TO_MOVE : 0);
+    }
+
+    /**
+     * Get the cells of the given mark.
+     *
+     * @param position the packed position.
+     * @param mark     the mark, A or B.
+     * @return the bits.
+     */
+    public static int getBits(int position, Board.Mark mark) {
+        return mark == Board.Mark.A ? position & MASK : (position >>> CELLS) & MASK;
+    }
+
+    /**
+     * Get the mark of the player to move.
+     *
+     * @param position the packed position.
+     * @return the mark.
+     */
+    public static Board.Mark getMover(int position) {
+        return (position & B_TO_MOVE) != 0 ? Board.Mark.B : Board.Mark.A;
+    }
+
+    /**
+     * Get the number of the empty cells.
+     *
+     * @param position the packed position.
+     * @return the number of the empty cells.
+     */
+    public static int getEmptyCount(int position) {
+        return CELLS - Integer.bitCount(position & (B_TO_MOVE - 1));
+    }
+
+    /**
+     * Make the moves of the packed position on an empty 3x3 board, in row order.
+     *
+     * @param position the packed position.
+     * @param board    the empty board.
+     */
+    public static void unpack(int position, Board board) {
+        for (int i = 0; i < CELLS; i++) {
+            if ((position & (1 << i)) != 0) {
+                board.makeMove(i, Board.Mark.A);
+            } else if ((position & (1 << (i + CELLS))) != 0) {
+                board.makeMove(i, Board.Mark.B);
+            }
+        }
+    }
+
+    /**
+     * Create the board of the packed position.
+     *
+     * @param position the packed position.
+     * @return the board.
+     */
+    public static Board toBoard(int position) {
+        Board board = new Board();
+        unpack(position, board);
+        return board;
+    }
+}
@@ -0,0 +1,235 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The precomputed perfect play of the 3x3 game, i.e. {@link BoardGeometry#STANDARD}. There's one
+ * byte per position, indexed by the base-3 index of the board seen from the player to move (0 for
+ * empty, 1 for the player to move and 2 for the opponent). The low 4 bits are the best move in
+ * flatted index and the next 2 bits are the game value for the player to move.
+ * <p>
+ * The binary layout is a header of 4 ints (magic, version, entry count and the CRC32 of the
+ * entries) followed by the entries. It's generated by {@link PerfectPlayTableGenerator}.
+ *
+ * @author yfwz100
+ */
+public class PerfectPlayTable {
+
+    /**
+     * The name of the bundled table resource, relative to this class.
+     */
+    public static final String RESOURCE = "perfect-play.bin";
+
+    /**
+     * The number of positions, i.e. 3 to the power of 9.
+     */
+    public static final int POSITIONS = 19683;
+
+    /**
+     * The number of cells of the 3x3 board.
+     */
+    public static final int CELLS = 9;
+
+    /**
+     * The value of an unreachable position.
+     */
+    public static final int UNKNOWN = 0;
+    public static final int LOSS = 1;
+    public static final int DRAW = 2;
+    public static final int WIN = 3;
+
+    /**
+     * The move stored when there's no move to make.
+     */
+    public static final int NO_MOVE = 0xf;
+
+    static final int MAGIC = 0x54545450; // "TTTP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * The base-3 index of each 9-bit mask, with the digit 1 on every set bit.
+     */
+    private static final int[] BASE3 = new int[1 << CELLS];
+
+    static {
+        for (int bits = 1; bits < BASE3.length; bits++) {
+            int i = Integer.numberOfTrailingZeros(bits);
+            int power = 1;
+            for (int j = 0; j < i; j++) {
+                power *= 3;
+            }
+            BASE3[bits] = BASE3[bits & (bits - 1)] + power;
+        }
+    }
+
+    private final ByteBuffer entries;
+
+    private PerfectPlayTable(ByteBuffer entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Get the base-3 index of the board seen from the given player.
+     *
+     * @param board the board.
+     * @param mark  the mark of the player to move.
+     * @return the index.
+     */
+    public static int indexOf(Board board, Board.Mark mark) {
+        return indexOf((int) board.getBits(mark), (int) board.getBits(mark.getOpponent()));
+    }
+
+    /**
+     * Get the base-3 index of the position given by the bit masks.
+     *
+     * @param mine   the cells of the player to move.
+     * @param theirs the cells of the opponent.
+     * @return the index.
+     */
+    public static int indexOf(int mine, int theirs) {
+        return BASE3[mine] + 2 * BASE3[theirs];
+    }
+
+    /**
+     * Get the packed entry of the board.
+     *
+     * @param board the board.
+     * @param mark  the mark of the player to move.
+     * @return the entry.
+     */
+    public int lookup(Board board, Board.Mark mark) {
+        return entries.get(indexOf(board, mark)) & 0xff;
+    }
+
+    /**
+     * Get the packed entry of the given index.
+     *
+     * @param index the base-3 index.
+     * @return the entry.
+     */
+    public int lookup(int index) {
+        return entries.get(index) & 0xff;
+    }
+
+    public static int getMove(int entry) {
+        return entry & 0xf;
+    }
+
+    public static int getValue(int entry) {
+        return (entry >>> 4) & 0x3;
+    }
+
+    static byte pack(int value, int move) {
+        return (byte) ((value << 4) | move);
+    }
+
+    /**
+     * Load the table bundled as the class resource.
+     *
+     * @return the table.
+     * @throws IOException if it's missing or corrupted.
+     */
+    public static PerfectPlayTable loadDefault() throws IOException {
+        InputStream in = PerfectPlayTable.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IOException("Missing resource " + RESOURCE);
+        }
+        try {
+            return load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read the table from the stream into the heap.
+     *
+     * @param in the stream.
+     * @return the table.
+     * @throws IOException if the table is malformed or the checksum mismatches.
+     */
+    public static PerfectPlayTable load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int checksum = readHeader(data.readInt(), data.readInt(), data.readInt(), data.readInt());
+        byte[] entries = new byte[POSITIONS];
+        data.readFully(entries);
+        CRC32 crc = new CRC32();
+        crc.update(entries, 0, entries.length);
+        verify(crc, checksum);
+        return new PerfectPlayTable(ByteBuffer.wrap(entries));
+    }
+
+    /**
+     * Map the table file into memory without copying it into the heap.
+     *
+     * @param file the table file.
+     * @return the table.
+     * @throws IOException if the table is malformed or the checksum mismatches.
+     */
+    public static PerfectPlayTable map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            if (channel.size() < HEADER_SIZE + POSITIONS) {
+                throw new IOException("Truncated table " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + POSITIONS);
+            int checksum = readHeader(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+            ByteBuffer entries = buffer.slice();
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[4096];
+            ByteBuffer view = entries.duplicate();
+            while (view.hasRemaining()) {
+                int length = Math.min(chunk.length, view.remaining());
+                view.get(chunk, 0, length);
+                crc.update(chunk, 0, length);
+            }
+            verify(crc, checksum);
+            return new PerfectPlayTable(entries);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the table entries with the header.
+     *
+     * @param out     the stream.
+     * @param entries the entries of all the positions.
+     * @throws IOException if failed to write.
+     */
+    static void write(OutputStream out, byte[] entries) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(entries, 0, entries.length);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(entries.length);
+        data.writeInt((int) crc.getValue());
+        data.write(entries);
+        data.flush();
+    }
+
+    private static int readHeader(int magic, int version, int count, int checksum) throws IOException {
+        if (magic != MAGIC || version != VERSION || count != POSITIONS) {
+            throw new IOException("Unsupported table format");
+        }
+        return checksum;
+    }
+
+    private static void verify(CRC32 crc, int checksum) throws IOException {
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch of the table");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Generates the {@link PerfectPlayTable} by solving every reachable position with the full-depth
+ * search. The search is deterministic, so the output is identical on every run.
+ * <p>
+ * Usage: {@code PerfectPlayTableGenerator <output file>}, e.g. to refresh
+ * {@code engine/src/main/resources/io/github/yfwz100/tictactoe/perfect-play.bin}.
+ *
+ * @author yfwz100
+ */
+public class PerfectPlayTableGenerator {
+
+    private final Agent agent = Agent.getInstance();
+    private final byte[] entries = new byte[PerfectPlayTable.POSITIONS];
+
+    /**
+     * Solve all the positions reachable from the empty board, whoever moves first.
+     *
+     * @return the entries of the table.
+     */
+    public byte[] generate() {
+        solve(new Board());
+        return entries;
+    }
+
+    /**
+     * Solve the position with A to move and the positions after it. The board is seen from the
+     * player to move, so A always stands for the player to move.
+     *
+     * @param board the board, restored before returning.
+     */
+    private void solve(Board board) {
+        int index = PerfectPlayTable.indexOf(board, Board.Mark.A);
+        if (entries[index] != 0) {
+            return;
+        }
+        if (board.hasWon(Board.Mark.B)) {
+            entries[index] = PerfectPlayTable.pack(PerfectPlayTable.LOSS, PerfectPlayTable.NO_MOVE);
+            return;
+        }
+        if (board.isFull()) {
+            entries[index] = PerfectPlayTable.pack(PerfectPlayTable.DRAW, PerfectPlayTable.NO_MOVE);
+            return;
+        }
+        Agent.Choice choice = agent.search(board, Board.Mark.A, PerfectPlayTable.CELLS);
+        int value;
+        if (choice.getUtility() > 0) {
+            value = PerfectPlayTable.WIN;
+        } else if (choice.getUtility() < 0) {
+            value = PerfectPlayTable.LOSS;
+        } else {
+            value = PerfectPlayTable.DRAW;
+        }
+        entries[index] = PerfectPlayTable.pack(value, choice.getX() * 3 + choice.getY());
+
+        // Swap the sides, so that A is to move again.
+        int mine = (int) board.getBits(Board.Mark.A);
+        int theirs = (int) board.getBits(Board.Mark.B);
+        int empty = (int) board.getEmptyBits();
+        while (empty != 0) {
+            int i = Integer.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            Board next = new Board();
+            setCells(next, theirs, Board.Mark.A);
+            setCells(next, mine | (1 << i), Board.Mark.B);
+            solve(next);
+        }
+    }
+
+    private static void setCells(Board board, int bits, Board.Mark mark) {
+        while (bits != 0) {
+            int i = Integer.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            board.place(i / 3, i % 3, mark);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PerfectPlayTableGenerator <output file>");
+            System.exit(1);
+        }
+        byte[] entries = new PerfectPlayTableGenerator().generate();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[0]));
+        try {
+            PerfectPlayTable.write(out, entries);
+        } finally {
+            out.close();
+        }
+    }
+}
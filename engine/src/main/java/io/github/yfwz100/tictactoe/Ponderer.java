@@ -0,0 +1,225 @@
+package io.github.yfwz100.tictactoe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Searches during the opponent's turn. After the agent moves, the likely replies of the opponent
+ * are played on copies of the board and the answers to them are searched on a background thread,
+ * the most likely reply first. When the real reply arrives,
+ * {@link #take(Board, Board.Mark, CancellationToken)} returns the answer searched for it, waiting
+ * for it if it's still running, and the searches of the wrong guesses are cancelled. The
+ * transposition table of the agent is warmed either way.
+ *
+ * @author yfwz100
+ */
+public class Ponderer {
+
+    private final Agent agent;
+    private final int maxReplies;
+
+    private ExecutorService executor;
+
+    /**
+     * The replies pondered since the last start, by the hash of the board after the reply.
+     */
+    private Map<Long, Reply> replies = new HashMap<>();
+    private Board.Mark mark;
+
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * A pondered reply: the search of the answer and the token to cancel it, which is cancelled
+     * by the token of the caller waiting for the answer too.
+     */
+    private static class Reply {
+        volatile CancellationToken caller;
+        final CancellationToken token = new CancellationToken() {
+            @Override
+            public boolean isCancelled() {
+                CancellationToken caller = Reply.this.caller;
+                return super.isCancelled() || (caller != null && caller.isCancelled());
+            }
+        };
+        Future<Agent.Choice> answer;
+    }
+
+    /**
+     * Construct the ponderer of the agent, pondering at most 9 replies.
+     *
+     * @param agent the agent.
+     */
+    public Ponderer(Agent agent) {
+        this(agent, 9);
+    }
+
+    /**
+     * Construct the ponderer of the agent.
+     *
+     * @param agent      the agent.
+     * @param maxReplies the maximum number of the replies to ponder after a move.
+     */
+    public Ponderer(Agent agent, int maxReplies) {
+        this.agent = agent;
+        this.maxReplies = maxReplies;
+    }
+
+    /**
+     * Start pondering the replies of the opponent, stopping the former pondering. The most likely
+     * reply is the best choice of the opponent at depth 1, and the rest follow in row order. The
+     * guess is searched without notifying the listeners of the agent or counting it.
+     *
+     * @param board    the board after the move of the agent, copied before it returns.
+     * @param opponent the mark of the opponent to reply.
+     * @param limits   the limits of the search of each answer, as the agent would search.
+     */
+    public synchronized void start(Board board, Board.Mark opponent, final SearchLimits limits) {
+        stop();
+        if (board.getStatus() != Board.Status.RUNNING) {
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "agent-ponder");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        mark = opponent.getOpponent();
+
+        int width = board.getGeometry().getWidth();
+        int[] moves = new int[board.getGeometry().getCells()];
+        int count = board.getEmptyCells(moves);
+        Agent.Choice likely = agent.search(board, opponent, 1);
+        int first = likely.getX() * width + likely.getY();
+        List<Integer> candidates = new ArrayList<>(count);
+        candidates.add(first);
+        for (int j = 0; j < count && candidates.size() < maxReplies; j++) {
+            if (moves[j] != first) {
+                candidates.add(moves[j]);
+            }
+        }
+
+        for (int move : candidates) {
+            final Board replied = board.clone();
+            replied.makeMove(move, opponent);
+            if (replied.getStatus() != Board.Status.RUNNING) {
+                continue;
+            }
+            final Reply reply = new Reply();
+            final Board.Mark answering = mark;
+            reply.answer = executor.submit(new Callable<Agent.Choice>() {
+                @Override
+                public Agent.Choice call() {
+                    return agent.getBestChoice(replied, answering, limits, reply.token);
+                }
+            });
+            replies.put(replied.getHash(), reply);
+        }
+    }
+
+    /**
+     * Take the answer pondered for the board, without a token to stop waiting.
+     *
+     * @param board the board after the real reply of the opponent.
+     * @param mark  the mark of the agent to move.
+     * @return the answer, or null if the reply wasn't pondered.
+     * @see #take(Board, Board.Mark, CancellationToken)
+     */
+    public Agent.Choice take(Board board, Board.Mark mark) {
+        return take(board, mark, null);
+    }
+
+    /**
+     * Take the answer pondered for the board. The other replies are cancelled, and the answer is
+     * waited for if it's still being searched. Cancelling the token cancels the search of the
+     * answer too, so the wait ends as soon as the search checks its limits.
+     *
+     * @param board the board after the real reply of the opponent.
+     * @param mark  the mark of the agent to move.
+     * @param token the token of the caller, e.g. of its game, or null.
+     * @return the answer, or null if the reply wasn't pondered or the token is cancelled.
+     */
+    public Agent.Choice take(Board board, Board.Mark mark, CancellationToken token) {
+        Reply hit;
+        synchronized (this) {
+            hit = mark == this.mark ? replies.get(board.getHash()) : null;
+            for (Reply reply : replies.values()) {
+                if (reply != hit) {
+                    reply.token.cancel();
+                    reply.answer.cancel(false);
+                }
+            }
+            if (hit == null) {
+                misses += 1;
+                return null;
+            }
+            hits += 1;
+            hit.caller = token;
+        }
+        try {
+            Agent.Choice answer = hit.answer.get();
+            return token != null && token.isCancelled() ? null : answer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stop pondering and discard the answers.
+     */
+    public synchronized void stop() {
+        for (Reply reply : replies.values()) {
+            reply.token.cancel();
+            reply.answer.cancel(false);
+        }
+        replies = new HashMap<>();
+        mark = null;
+    }
+
+    /**
+     * Stop pondering and release the thread.
+     */
+    public synchronized void shutdown() {
+        stop();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Get the number of the real replies which have been pondered.
+     *
+     * @return the number of hits.
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of the real replies which haven't been pondered.
+     *
+     * @return the number of misses.
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The compact encodings of the positions. A 3x3 position fits in an int, either as the 18-bit
+ * masks of A and B or as the base-3 index of {@link PerfectPlayTable}, and a general board takes
+ * 2 bits per cell (0 for empty, 1 for A and 2 for B, 4 cells per byte in row order). None of the
+ * methods allocate.
+ *
+ * @author yfwz100
+ */
+public final class PositionCodec {
+
+    /**
+     * The number of positions of the 3x3 board by the base-3 index, 3^9.
+     */
+    public static final int INDEX_COUNT = PerfectPlayTable.POSITIONS;
+
+    private static final int CELLS = 9;
+
+    private PositionCodec() {
+    }
+
+    /**
+     * Encode the 3x3 board into 18 bits: the bits 0-8 are the cells of A and the bits 9-17 are
+     * the ones of B.
+     *
+     * @param board the 3x3 board.
+     * @return the code.
+     */
+    public static int encode3x3(Board board) {
+        checkStandard(board);
+        return (int) board.getBits(Board.Mark.A) | ((int) board.getBits(Board.Mark.B) << CELLS);
+    }
+
+    /**
+     * Decode the 18 bits into the 3x3 board, replacing its cells without notifying the listeners.
+     *
+     * @param code  the code by {@link #encode3x3(Board)}.
+     * @param board the 3x3 board.
+     */
+    public static void decode3x3(int code, Board board) {
+        checkStandard(board);
+        board.clear();
+        for (int i = 0; i < CELLS; i++) {
+            if ((code & (1 << i)) != 0) {
+                board.put(i, Board.Mark.A);
+            } else if ((code & (1 << (i + CELLS))) != 0) {
+                board.put(i, Board.Mark.B);
+            }
+        }
+    }
+
+    /**
+     * Encode the 3x3 board as the base-3 index, with the cell i weighted by 3^i and A as 1, so
+     * the index is in [0, {@link #INDEX_COUNT}).
+     *
+     * @param board the 3x3 board.
+     * @return the index.
+     */
+    public static int toIndex(Board board) {
+        checkStandard(board);
+        return PerfectPlayTable.indexOf((int) board.getBits(Board.Mark.A),
+                (int) board.getBits(Board.Mark.B));
+    }
+
+    /**
+     * Decode the base-3 index into the 3x3 board, replacing its cells without notifying the
+     * listeners.
+     *
+     * @param index the index by {@link #toIndex(Board)}.
+     * @param board the 3x3 board.
+     */
+    public static void fromIndex(int index, Board board) {
+        checkStandard(board);
+        if (index < 0 || index >= INDEX_COUNT) {
+            throw new IllegalArgumentException("Illegal index " + index);
+        }
+        board.clear();
+        for (int i = 0; i < CELLS; i++, index /= 3) {
+            int digit = index % 3;
+            if (digit != 0) {
+                board.put(i, digit == 1 ? Board.Mark.A : Board.Mark.B);
+            }
+        }
+    }
+
+    /**
+     * Get the number of bytes of the encoded board of the geometry.
+     *
+     * @param geometry the geometry.
+     * @return the number of bytes.
+     */
+    public static int getEncodedLength(BoardGeometry geometry) {
+        return (geometry.getCells() + 3) / 4;
+    }
+
+    /**
+     * Encode the board in 2 bits per cell.
+     *
+     * @param board  the board.
+     * @param out    the bytes to write to.
+     * @param offset the offset of the first byte.
+     * @return the number of the bytes written.
+     */
+    public static int encode(Board board, byte[] out, int offset) {
+        int cells = board.getGeometry().getCells();
+        int length = getEncodedLength(board.getGeometry());
+        for (int b = 0; b < length; b++) {
+            int packed = 0;
+            for (int j = 0; j < 4; j++) {
+                int i = b * 4 + j;
+                if (i < cells) {
+                    int word = i >>> 6;
+                    long bit = 1L << i;
+                    if ((board.getBits(Board.Mark.A, word) & bit) != 0) {
+                        packed |= 1 << (j * 2);
+                    } else if ((board.getBits(Board.Mark.B, word) & bit) != 0) {
+                        packed |= 2 << (j * 2);
+                    }
+                }
+            }
+            out[offset + b] = (byte) packed;
+        }
+        return length;
+    }
+
+    /**
+     * Decode the cells in 2 bits each into the board, replacing its cells without notifying the
+     * listeners.
+     *
+     * @param in     the bytes to read from.
+     * @param offset the offset of the first byte.
+     * @param board  the board of the encoded geometry.
+     * @return the number of the bytes read.
+     */
+    public static int decode(byte[] in, int offset, Board board) {
+        int cells = board.getGeometry().getCells();
+        int length = getEncodedLength(board.getGeometry());
+        board.clear();
+        for (int i = 0; i < cells; i++) {
+            int value = (in[offset + (i >>> 2)] >>> ((i & 3) * 2)) & 3;
+            if (value == 1) {
+                board.put(i, Board.Mark.A);
+            } else if (value == 2) {
+                board.put(i, Board.Mark.B);
+            } else if (value != 0) {
+                throw new IllegalArgumentException("Illegal cell at " + i);
+            }
+        }
+        return length;
+    }
+
+    private static void checkStandard(Board board) {
+        if (board.getGeometry() != BoardGeometry.STANDARD) {
+            throw new IllegalArgumentException("Only the 3x3 board fits in an int.");
+        }
+    }
+}
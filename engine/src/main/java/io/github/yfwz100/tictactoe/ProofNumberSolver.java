@@ -0,0 +1,568 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Proves whether the player to move can force a win, by the depth-first proof-number search
+ * (df-pn). The proof number of a position is the number of the leaves still to prove the win,
+ * and the disproof number the leaves to refute it. The search always expands the most-proving
+ * position, going deeper until the numbers of the position exceed its thresholds.
+ * <p>
+ * A win is either proved or disproved, and the draws count as disproofs. By the strategy-stealing
+ * argument, a mark more never hurts in the k-in-a-row games, so the second player can't force a
+ * win, and the first player's win disproved means the game is a draw.
+ * <p>
+ * The numbers are kept in a hashed table by the canonical position, within a memory cap. When the
+ * table is 3/4 full, the entries of the smallest subtrees are collected, most of them the solved
+ * positions deep in the tree, which are cheap to solve again. The table can be written to a
+ * checkpoint file and read back, so a long solve can be resumed after a restart.
+ * <p>
+ * Usage: {@code ProofNumberSolver <WxHxK> [checkpoint file] [memory MB]}, e.g.
+ * {@code ProofNumberSolver 4x4x4 pn-4x4x4.bin 256}.
+ *
+ * @author yfwz100
+ */
+public class ProofNumberSolver {
+
+    /**
+     * The result of a proof.
+     */
+    public enum Result {
+        WIN, NOT_WIN, UNKNOWN
+    }
+
+    /**
+     * Listens to the progress of a proof.
+     */
+    public interface ProgressListener {
+        /**
+         * Called regularly while proving, on the proving thread.
+         *
+         * @param proofNumber    the proof number of the root.
+         * @param disproofNumber the disproof number of the root.
+         * @param nodes          the nodes expanded so far.
+         * @param nodesPerSecond the nodes expanded per second since the start.
+         */
+        void onProgress(int proofNumber, int disproofNumber, long nodes, double nodesPerSecond);
+
+        /**
+         * Called when the checkpoint can't be written, on the proving thread. The proof goes on
+         * and tries again at the next checkpoint, until it fails {@link #MAX_CHECKPOINT_FAILURES}
+         * times in a row.
+         *
+         * @param e the failure.
+         */
+        void onCheckpointFailed(IOException e);
+    }
+
+    /**
+     * The checkpoints failed in a row at which the proof stops.
+     */
+    public static final int MAX_CHECKPOINT_FAILURES = 3;
+
+    /**
+     * The proof or disproof number of a solved position.
+     */
+    public static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    static final int MAGIC = 0x5454504e; // "TTPN"
+    static final int VERSION = 1;
+
+    private static final int ENTRY_BYTES = 24;
+    private static final int BUCKET = 4;
+    private static final int CHECK_INTERVAL = 4096;
+
+    private static final long SIDE_A = 0x2545f4914f6cdd1dL;
+    private static final long SIDE_B = 0x61c8864680b583ebL;
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final long[] works;
+    private int size = 0;
+    private long collections = 0;
+
+    private Board board;
+    private Board.Mark attacker;
+    private int[][] moves = new int[0][];
+    private int[][] proofBuffers = new int[0][];
+    private int[][] disproofBuffers = new int[0][];
+
+    private ProgressListener listener;
+    private long progressInterval = 1000;
+    private File checkpoint;
+    private long checkpointInterval = 60000;
+    private CancellationToken token;
+
+    private int rootProof;
+    private int rootDisproof;
+    private long nodes = 0;
+    private int unchecked = 0;
+    private long start;
+    private long lastProgress;
+    private long lastCheckpoint;
+    private int checkpointFailures;
+    private IOException checkpointError;
+    private boolean stopped;
+
+    /**
+     * The numbers of the child last evaluated or searched.
+     */
+    private int childProof;
+    private int childDisproof;
+
+    /**
+     * Construct the solver.
+     *
+     * @param memoryBytes the memory of the table at most.
+     */
+    public ProofNumberSolver(long memoryBytes) {
+        long entries = Long.highestOneBit(Math.max(BUCKET, memoryBytes / ENTRY_BYTES));
+        int capacity = (int) Math.min(entries, 1 << 30);
+        this.keys = new long[capacity];
+        this.proofs = new int[capacity];
+        this.disproofs = new int[capacity];
+        this.works = new long[capacity];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: ProofNumberSolver <WxHxK> [checkpoint file] [memory MB]");
+            System.exit(1);
+        }
+        String[] parts = args[0].split("x");
+        BoardGeometry geometry = BoardGeometry.of(Integer.parseInt(parts[0]),
+                Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        long memory = (args.length > 2 ? Long.parseLong(args[2]) : 256) << 20;
+        ProofNumberSolver solver = new ProofNumberSolver(memory);
+        Board board = new Board(geometry);
+        if (args.length > 1) {
+            File file = new File(args[1]);
+            if (file.exists()) {
+                solver.restore(file, board, Board.Mark.A);
+                System.out.println("Resumed from " + file + " with " + solver.size + " entries");
+            }
+            solver.setCheckpoint(file, 60000);
+        }
+        solver.setProgressListener(new ProgressListener() {
+            @Override
+            public void onProgress(int proofNumber, int disproofNumber, long nodes,
+                                   double nodesPerSecond) {
+                System.out.println(String.format(Locale.US, "pn=%d dn=%d nodes=%d nps=%.0f",
+                        proofNumber, disproofNumber, nodes, nodesPerSecond));
+            }
+
+            @Override
+            public void onCheckpointFailed(IOException e) {
+                System.err.println("Failed to write the checkpoint: " + e);
+            }
+        });
+        Result result = solver.solve(board, Board.Mark.A);
+        System.out.println(String.format(Locale.US, "%s: %s in %d nodes",
+                geometry, result == Result.WIN ? "the first player wins"
+                        : result == Result.NOT_WIN ? "a draw" : "unknown", solver.nodes));
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the interval of the progress reports.
+     *
+     * @param millis the interval in milliseconds.
+     */
+    public void setProgressInterval(long millis) {
+        this.progressInterval = millis;
+    }
+
+    /**
+     * Write the table to the file regularly while proving, and when the proof stops.
+     *
+     * @param file   the checkpoint file, or null to turn it off.
+     * @param millis the interval in milliseconds.
+     */
+    public void setCheckpoint(File file, long millis) {
+        this.checkpoint = file;
+        this.checkpointInterval = millis;
+    }
+
+    /**
+     * Prove whether the player to move can force a win. The table of the former proofs is reused
+     * if the board and the player are the same.
+     *
+     * @param board the board, not modified.
+     * @param mark  the mark of the player to move.
+     * @param token the token to stop the proof, or null.
+     * @return the result, {@link Result#UNKNOWN} if it's stopped.
+     * @throws IOException if the checkpoint can't be written at the end, or
+     *                     {@link #MAX_CHECKPOINT_FAILURES} times in a row while proving.
+     */
+    public Result solve(Board board, Board.Mark mark, CancellationToken token) throws IOException {
+        prepare(board, mark);
+        this.token = token;
+        Board.Mark opponent = mark.getOpponent();
+        if (board.hasWon(mark)) {
+            return Result.WIN;
+        } else if (board.hasWon(opponent) || board.isFull()) {
+            return Result.NOT_WIN;
+        }
+        start = lastProgress = lastCheckpoint = System.nanoTime();
+        stopped = false;
+        checkpointFailures = 0;
+        checkpointError = null;
+        nodes = 0;
+        rootProof = rootDisproof = 1;
+        search(mark, INFINITY, INFINITY, 0);
+        if (checkpointError != null) {
+            throw checkpointError;
+        }
+        if (checkpoint != null) {
+            save(checkpoint);
+        }
+        if (rootProof == 0) {
+            return Result.WIN;
+        } else if (rootDisproof == 0) {
+            return Result.NOT_WIN;
+        }
+        return Result.UNKNOWN;
+    }
+
+    /**
+     * Prove whether the player to move can force a win, without the limit.
+     *
+     * @param board the board, not modified.
+     * @param mark  the mark of the player to move.
+     * @return the result.
+     * @throws IOException if the checkpoint can't be written.
+     */
+    public Result solve(Board board, Board.Mark mark) throws IOException {
+        return solve(board, mark, null);
+    }
+
+    private void prepare(Board original, Board.Mark mark) {
+        if (board == null || board.getGeometry() != original.getGeometry() || mark != attacker) {
+            clear();
+            board = new Board(original.getGeometry());
+            attacker = mark;
+        }
+        board.copyFrom(original);
+        int cells = original.getGeometry().getCells();
+        if (moves.length <= cells) {
+            moves = new int[cells + 1][cells];
+            proofBuffers = new int[cells + 1][cells];
+            disproofBuffers = new int[cells + 1][cells];
+        }
+    }
+
+    /**
+     * Write the table to the file, through a temporary file so the former checkpoint is kept if
+     * it fails.
+     *
+     * @param file the checkpoint file.
+     * @throws IOException           if failed to write.
+     * @throws IllegalStateException if nothing is solved or restored yet.
+     */
+    public void save(File file) throws IOException {
+        if (board == null) {
+            throw new IllegalStateException("Nothing to save before solving or restoring.");
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary)));
+        try {
+            BoardGeometry geometry = board.getGeometry();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(geometry.getWidth());
+            out.writeInt(geometry.getHeight());
+            out.writeInt(geometry.getWinLength());
+            out.writeInt(attacker.ordinal());
+            out.writeInt(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    out.writeLong(keys[i]);
+                    out.writeInt(proofs[i]);
+                    out.writeInt(disproofs[i]);
+                    out.writeLong(works[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !temporary.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * Read the table written by {@link #save(File)} to resume the proofs of the player on the
+     * boards of the geometry. The entries beyond the capacity are dropped as when proving.
+     *
+     * @param file  the checkpoint file.
+     * @param board a board of the geometry.
+     * @param mark  the mark of the player to prove the wins of.
+     * @throws IOException if the file is malformed or of another board or player.
+     */
+    public void restore(File file, Board board, Board.Mark mark) throws IOException {
+        prepare(board, mark);
+        clear();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            BoardGeometry geometry = board.getGeometry();
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != geometry.getWidth() || in.readInt() != geometry.getHeight()
+                    || in.readInt() != geometry.getWinLength() || in.readInt() != mark.ordinal()) {
+                throw new IOException("Mismatched checkpoint " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                int pn = in.readInt();
+                int dn = in.readInt();
+                store(key, pn, dn, in.readLong());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of the entries in the table.
+     *
+     * @return the number of the entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of the garbage collections of the table.
+     *
+     * @return the number of the collections.
+     */
+    public long getCollections() {
+        return collections;
+    }
+
+    /**
+     * Expand the position until its numbers reach the thresholds. The numbers of the children
+     * are kept in the buffers of the ply while the position is expanded, so a child pushed out of
+     * the table isn't taken as unexpanded again.
+     *
+     * @param mark     the mark of the player to move.
+     * @param proof    the threshold of the proof number.
+     * @param disproof the threshold of the disproof number.
+     * @param ply      the plies from the root.
+     */
+    private void search(Board.Mark mark, int proof, int disproof, int ply) {
+        long key = keyOf(mark);
+        int slot = find(key);
+        long work = slot >= 0 ? works[slot] : 0;
+        long before = nodes;
+        nodes += 1;
+        check();
+        boolean or = mark == attacker;
+        int[] cells = moves[ply];
+        int[] childProofs = proofBuffers[ply];
+        int[] childDisproofs = disproofBuffers[ply];
+        int count = board.getEmptyCells(cells);
+        for (int j = 0; j < count; j++) {
+            evaluate(cells[j], mark);
+            childProofs[j] = childProof;
+            childDisproofs[j] = childDisproof;
+        }
+        while (true) {
+            // The numbers of the position from the children, and the most-proving child.
+            int pn = or ? INFINITY : 0;
+            int dn = or ? 0 : INFINITY;
+            int best = -1;
+            int second = INFINITY;
+            for (int j = 0; j < count; j++) {
+                int[] minimized = or ? childProofs : childDisproofs;
+                if (best < 0 || minimized[j] < minimized[best]) {
+                    second = best < 0 ? INFINITY : minimized[best];
+                    best = j;
+                } else if (minimized[j] < second) {
+                    second = minimized[j];
+                }
+                if (or) {
+                    pn = Math.min(pn, childProofs[j]);
+                    dn = Math.min(INFINITY, dn + childDisproofs[j]);
+                } else {
+                    pn = Math.min(INFINITY, pn + childProofs[j]);
+                    dn = Math.min(dn, childDisproofs[j]);
+                }
+            }
+            if (ply == 0) {
+                rootProof = pn;
+                rootDisproof = dn;
+            }
+            if (pn >= proof || dn >= disproof || stopped) {
+                store(key, pn, dn, work + nodes - before);
+                childProof = pn;
+                childDisproof = dn;
+                return;
+            }
+            int childProofThreshold;
+            int childDisproofThreshold;
+            if (or) {
+                childProofThreshold = Math.min(proof, second + 1);
+                childDisproofThreshold = Math.min(INFINITY, disproof - dn + childDisproofs[best]);
+            } else {
+                childProofThreshold = Math.min(INFINITY, proof - pn + childProofs[best]);
+                childDisproofThreshold = Math.min(disproof, second + 1);
+            }
+            board.makeMove(cells[best], mark);
+            search(mark.getOpponent(), childProofThreshold, childDisproofThreshold, ply + 1);
+            board.unmakeMove();
+            childProofs[best] = childProof;
+            childDisproofs[best] = childDisproof;
+        }
+    }
+
+    /**
+     * Get the numbers of the child into {@link #childProof} and {@link #childDisproof}.
+     */
+    private void evaluate(int move, Board.Mark mark) {
+        board.makeMove(move, mark);
+        if (board.hasWon(attacker)) {
+            childProof = 0;
+            childDisproof = INFINITY;
+        } else if (board.hasWon(attacker.getOpponent()) || board.isFull()) {
+            childProof = INFINITY;
+            childDisproof = 0;
+        } else {
+            int slot = find(keyOf(mark.getOpponent()));
+            childProof = slot >= 0 ? proofs[slot] : 1;
+            childDisproof = slot >= 0 ? disproofs[slot] : 1;
+        }
+        board.unmakeMove();
+    }
+
+    /**
+     * Report the progress, write the checkpoint and check the token regularly.
+     */
+    private void check() {
+        if (++unchecked < CHECK_INTERVAL) {
+            return;
+        }
+        unchecked = 0;
+        if (token != null && token.isCancelled()) {
+            stopped = true;
+        }
+        long now = System.nanoTime();
+        if (listener != null && now - lastProgress >= progressInterval * 1000000) {
+            lastProgress = now;
+            listener.onProgress(rootProof, rootDisproof, nodes, nodes / ((now - start) / 1e9));
+        }
+        if (checkpoint != null && now - lastCheckpoint >= checkpointInterval * 1000000) {
+            lastCheckpoint = now;
+            try {
+                save(checkpoint);
+                checkpointFailures = 0;
+            } catch (IOException e) {
+                checkpointFailures += 1;
+                if (listener != null) {
+                    listener.onCheckpointFailed(e);
+                }
+                if (checkpointFailures >= MAX_CHECKPOINT_FAILURES) {
+                    // Don't go on for hours without a checkpoint.
+                    checkpointError = e;
+                    stopped = true;
+                }
+            }
+        }
+    }
+
+    private long keyOf(Board.Mark mark) {
+        long key = board.getHash(board.getCanonicalSymmetry())
+                ^ (mark == Board.Mark.A ? SIDE_A : SIDE_B);
+        return key == 0 ? 1 : key;
+    }
+
+    private int bucketOf(long key) {
+        long h = key ^ (key >>> 32);
+        return ((int) h * 0x9e3779b9 >>> 2) & (keys.length - BUCKET);
+    }
+
+    private int find(long key) {
+        int bucket = bucketOf(key);
+        for (int i = bucket; i < bucket + BUCKET; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Store the numbers, replacing the entry of the smallest subtree if the bucket is full.
+     */
+    private void store(long key, int pn, int dn, long work) {
+        int bucket = bucketOf(key);
+        int slot = -1;
+        for (int i = bucket; i < bucket + BUCKET; i++) {
+            if (keys[i] == key) {
+                slot = i;
+                break;
+            } else if (keys[i] == 0 && slot < 0) {
+                slot = i;
+            }
+        }
+        if (slot < 0) {
+            slot = bucket;
+            for (int i = bucket + 1; i < bucket + BUCKET; i++) {
+                if (works[i] < works[slot]) {
+                    slot = i;
+                }
+            }
+        } else if (keys[slot] == 0) {
+            size += 1;
+        }
+        keys[slot] = key;
+        proofs[slot] = pn;
+        disproofs[slot] = dn;
+        works[slot] = work;
+        if (size >= keys.length / 4 * 3) {
+            collect();
+        }
+    }
+
+    /**
+     * Remove the entries of the smallest subtrees until the table is half full.
+     */
+    private void collect() {
+        collections += 1;
+        for (long threshold = 1; size > keys.length / 2; threshold *= 2) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && works[i] <= threshold) {
+                    keys[i] = 0;
+                    size -= 1;
+                }
+            }
+        }
+    }
+}
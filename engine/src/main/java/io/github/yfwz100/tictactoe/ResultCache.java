@@ -0,0 +1,367 @@
+package io.github.yfwz100.tictactoe;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The bounded cache of the choices of the {@link Agent}, keyed by the canonical position, the
+ * side to move and the depth, so the symmetric positions share an entry and a symmetric move of
+ * the same score may be returned. It's split into segments by the key, each guarded by its own
+ * lock and evicting by the CLOCK policy, so the threads rarely contend. The entries are kept in
+ * primitive arrays of at most {@link #ENTRY_BYTES} bytes per entry, so the cache may be bounded
+ * either by the entries or by the memory, see {@link #ofMemory(long)}.
+ *
+ * @author yfwz100
+ * @see Agent#setResultCache(ResultCache)
+ */
+public class ResultCache {
+
+    /**
+     * The bytes of an entry at most: the key, the reference to the geometry, the move, the
+     * utility, the reference bit and up to 4 slots of the index.
+     */
+    public static final int ENTRY_BYTES = 8 + 4 + 4 + 4 + 1 + 4 * 4;
+
+    private static final int SEGMENTS = 16;
+
+    private static final long SIDE_A = 0x2545f4914f6cdd1dL;
+    private static final long SIDE_B = 0x61c8864680b583ebL;
+
+    private final Segment[] segments;
+    private final int capacity;
+
+    /**
+     * Construct the cache.
+     *
+     * @param capacity the maximum number of entries.
+     */
+    public ResultCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+        int count = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+        int perSegment = (capacity + count - 1) / count;
+        this.segments = new Segment[count];
+        for (int s = 0; s < count; s++) {
+            segments[s] = new Segment(perSegment);
+        }
+        this.capacity = perSegment * count;
+    }
+
+    /**
+     * Construct the cache within the memory, i.e. of as many entries as fit the bytes.
+     *
+     * @param bytes the bytes of the entries at most.
+     * @return the cache.
+     */
+    public static ResultCache ofMemory(long bytes) {
+        int capacity = (int) Math.min(Integer.MAX_VALUE, bytes / ENTRY_BYTES);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Too little memory " + bytes);
+        }
+        // The capacity is rounded up to the segments, so round it down first.
+        int count = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+        return new ResultCache(capacity - capacity % count);
+    }
+
+    /**
+     * Get the cached choice.
+     *
+     * @param board the board.
+     * @param mark  the mark of the player to move.
+     * @param depth the plies searched, capped by the empty cells.
+     * @return the choice, or null if it's not cached.
+     */
+    public Agent.Choice get(Board board, Board.Mark mark, int depth) {
+        int symmetry = board.getCanonicalSymmetry();
+        long key = keyOf(board, symmetry, mark, depth);
+        Segment segment = segmentOf(key);
+        int move;
+        int utility;
+        synchronized (segment) {
+            int slot = segment.find(key, board.getGeometry());
+            if (slot < 0) {
+                segment.misses += 1;
+                return null;
+            }
+            segment.hits += 1;
+            segment.referenced[slot] = true;
+            move = segment.moves[slot];
+            utility = segment.utilities[slot];
+        }
+        BoardGeometry geometry = board.getGeometry();
+        move = geometry.inverseTransform(symmetry, move);
+        return new Agent.Choice(move / geometry.getWidth(), move % geometry.getWidth(), utility);
+    }
+
+    /**
+     * Cache the choice, evicting an entry not used recently if the segment is full.
+     *
+     * @param board  the board.
+     * @param mark   the mark of the player to move.
+     * @param depth  the plies searched, capped by the empty cells.
+     * @param choice the choice, not null.
+     */
+    public void put(Board board, Board.Mark mark, int depth, Agent.Choice choice) {
+        int symmetry = board.getCanonicalSymmetry();
+        long key = keyOf(board, symmetry, mark, depth);
+        BoardGeometry geometry = board.getGeometry();
+        int move = geometry.transform(symmetry,
+                choice.getX() * geometry.getWidth() + choice.getY());
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, geometry, move, choice.getUtility());
+        }
+    }
+
+    /**
+     * Solve and cache the openings: the positions within the given plies from the empty board,
+     * with either player moving first. The symmetric positions are solved once, by the search
+     * the agent would cache, without notifying its listeners or counting into its statistics.
+     *
+     * @param agent    the agent to solve the positions.
+     * @param geometry the geometry of the board.
+     * @param plies    the plies of the openings.
+     * @param depth    the plies to search each position.
+     * @return the number of the solved positions.
+     */
+    public int prewarm(Agent agent, BoardGeometry geometry, int plies, int depth) {
+        Board board = new Board(geometry);
+        int[][] moves = new int[plies + 1][geometry.getCells()];
+        Set<Long> visited = new HashSet<>();
+        return prewarm(agent, board, Board.Mark.A, plies, depth, moves, visited)
+                + prewarm(agent, board, Board.Mark.B, plies, depth, moves, visited);
+    }
+
+    private int prewarm(Agent agent, Board board, Board.Mark mark, int plies, int depth,
+                        int[][] moves, Set<Long> visited) {
+        int capped = Math.min(depth, board.getEmptyCount());
+        long key = keyOf(board, board.getCanonicalSymmetry(), mark, capped);
+        if (board.getStatus() != Board.Status.RUNNING || !visited.add(key)) {
+            // The symmetric position has been visited with its openings.
+            return 0;
+        }
+        int solved = 0;
+        if (!contains(key, board.getGeometry())) {
+            put(board, mark, capped, agent.search(board, mark, depth));
+            solved += 1;
+        }
+        if (plies > 0) {
+            int[] buffer = moves[plies];
+            int count = board.getEmptyCells(buffer);
+            for (int j = 0; j < count; j++) {
+                board.makeMove(buffer[j], mark);
+                solved += prewarm(agent, board, mark.getOpponent(), plies - 1, depth, moves,
+                        visited);
+                board.unmakeMove();
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * Check if the key is cached without counting a hit or a miss.
+     */
+    private boolean contains(long key, BoardGeometry geometry) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.find(key, geometry) >= 0;
+        }
+    }
+
+    /**
+     * Remove all the entries, keeping the counters.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of the entries.
+     *
+     * @return the number of the entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long getMisses() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long getEvictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    private static long keyOf(Board board, int symmetry, Board.Mark mark, int depth) {
+        long key = board.getHash(symmetry) ^ (mark == Board.Mark.A ? SIDE_A : SIDE_B);
+        return key ^ (depth * 0x9e3779b97f4a7c15L);
+    }
+
+    private Segment segmentOf(long key) {
+        return segments[(int) (key >>> 60) & (segments.length - 1)];
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /**
+     * A segment of the cache: the entries in slots, swept by the hand of the CLOCK, and the
+     * open-addressing index from the keys to the slots.
+     */
+    private static final class Segment {
+        final long[] keys;
+        final BoardGeometry[] geometries;
+        final int[] moves;
+        final int[] utilities;
+        final boolean[] referenced;
+        final int[] index;
+        int size = 0;
+        int hand = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+
+        Segment(int slots) {
+            keys = new long[slots];
+            geometries = new BoardGeometry[slots];
+            moves = new int[slots];
+            utilities = new int[slots];
+            referenced = new boolean[slots];
+            index = new int[Integer.highestOneBit(slots) << 2];
+        }
+
+        /**
+         * Find the slot of the key.
+         *
+         * @return the slot, or -1 if it's missing.
+         */
+        int find(long key, BoardGeometry geometry) {
+            int mask = index.length - 1;
+            for (int h = mix(key) & mask; index[h] != 0; h = (h + 1) & mask) {
+                int slot = index[h] - 1;
+                if (keys[slot] == key) {
+                    return geometries[slot] == geometry ? slot : -1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, BoardGeometry geometry, int move, int utility) {
+            int mask = index.length - 1;
+            for (int h = mix(key) & mask; index[h] != 0; h = (h + 1) & mask) {
+                int slot = index[h] - 1;
+                if (keys[slot] == key) {
+                    set(slot, key, geometry, move, utility);
+                    return;
+                }
+            }
+            int slot;
+            if (size < keys.length) {
+                slot = size;
+                size += 1;
+            } else {
+                slot = evict();
+            }
+            int h = mix(key) & mask;
+            while (index[h] != 0) {
+                h = (h + 1) & mask;
+            }
+            index[h] = slot + 1;
+            set(slot, key, geometry, move, utility);
+        }
+
+        private void set(int slot, long key, BoardGeometry geometry, int move, int utility) {
+            keys[slot] = key;
+            geometries[slot] = geometry;
+            moves[slot] = move;
+            utilities[slot] = utility;
+            referenced[slot] = false;
+        }
+
+        /**
+         * Sweep the hand past the recently used slots and free the first one not used.
+         *
+         * @return the freed slot.
+         */
+        private int evict() {
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) % keys.length;
+            }
+            int slot = hand;
+            hand = (hand + 1) % keys.length;
+            remove(slot);
+            evictions += 1;
+            return slot;
+        }
+
+        /**
+         * Remove the slot from the index, shifting the following entries back.
+         */
+        private void remove(int slot) {
+            int mask = index.length - 1;
+            int i = mix(keys[slot]) & mask;
+            while (index[i] != slot + 1) {
+                i = (i + 1) & mask;
+            }
+            for (int j = (i + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+                int home = mix(keys[index[j] - 1]) & mask;
+                // Keep the entry if its home is cyclically in (i, j].
+                boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!stays) {
+                    index[i] = index[j];
+                    i = j;
+                }
+            }
+            index[i] = 0;
+        }
+
+        void clear() {
+            Arrays.fill(index, 0);
+            Arrays.fill(geometries, null);
+            size = 0;
+            hand = 0;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.yfwz100.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Solves all the positions of a small board into an {@link EndgameDatabase} by retrograde
+ * analysis. A move adds a digit to the base-3 index, so every position after a move has a higher
+ * index than the position before it. Sweeping the indices from the full boards down to the empty
+ * one, the values propagate backwards from the terminal positions in a single pass, each position
+ * taking the best of the values after its moves, which are already solved.
+ * <p>
+ * The positions which can't be reached, i.e. with the wrong side to move or with a line left
+ * unanswered, are left {@link PerfectPlayTable#UNKNOWN}.
+ * <p>
+ * Usage: {@code RetrogradeSolver <WxHxK> <output file>}, e.g. {@code RetrogradeSolver 4x4x3
+ * endgame-4x4x3.bin}, which takes a few seconds and 21 MB.
+ *
+ * @author yfwz100
+ */
+public class RetrogradeSolver {
+
+    private final EndgameDatabase database;
+    private final BoardGeometry geometry;
+    private final long[] lineMasks;
+    private final long full;
+
+    private long wins = 0;
+    private long draws = 0;
+    private long losses = 0;
+
+    /**
+     * Construct the solver filling the database.
+     *
+     * @param database the database.
+     */
+    public RetrogradeSolver(EndgameDatabase database) {
+        this.database = database;
+        this.geometry = database.getGeometry();
+        this.lineMasks = new long[geometry.getLineCount()];
+        for (int line = 0; line < lineMasks.length; line++) {
+            lineMasks[line] = geometry.getLineMask(line, 0);
+        }
+        this.full = geometry.getCells() == 64 ? -1L : (1L << geometry.getCells()) - 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: RetrogradeSolver <WxHxK> <output file>");
+            System.exit(1);
+        }
+        String[] parts = args[0].split("x");
+        BoardGeometry geometry = BoardGeometry.of(Integer.parseInt(parts[0]),
+                Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        EndgameDatabase database = EndgameDatabase.map(new File(args[1]), geometry);
+        RetrogradeSolver solver = new RetrogradeSolver(database);
+        long start = System.nanoTime();
+        solver.solve();
+        Board empty = new Board(geometry);
+        System.out.println(String.format(Locale.US, "Solved %s in %.1f s: %d wins, %d draws, "
+                        + "%d losses; the empty board is valued %d for the first player.", geometry,
+                (System.nanoTime() - start) / 1e9, solver.wins, solver.draws, solver.losses,
+                database.getValue(empty, Board.Mark.A)));
+    }
+
+    /**
+     * Solve all the positions and mark the database solved.
+     */
+    public void solve() {
+        int cells = geometry.getCells();
+        int[] digits = new int[cells];
+        long bitsA = 0;
+        long bitsB = full;
+        int countA = 0;
+        int countB = cells;
+        long index = 1;
+        for (int i = 0; i < cells; i++) {
+            digits[i] = 2;
+            index *= 3;
+        }
+        for (index -= 1; ; index--) {
+            solve(index, bitsA, bitsB, countA, countB);
+            if (index == 0) {
+                break;
+            }
+            // Decrement the digits, borrowing from the higher cells.
+            int i = 0;
+            for (; digits[i] == 0; i++) {
+                digits[i] = 2;
+                bitsB |= 1L << i;
+                countB += 1;
+            }
+            if (digits[i] == 2) {
+                digits[i] = 1;
+                bitsB &= ~(1L << i);
+                countB -= 1;
+                bitsA |= 1L << i;
+                countA += 1;
+            } else {
+                digits[i] = 0;
+                bitsA &= ~(1L << i);
+                countA -= 1;
+            }
+        }
+        database.setSolved();
+    }
+
+    /**
+     * Solve the position with either side to move.
+     */
+    private void solve(long index, long bitsA, long bitsB, int countA, int countB) {
+        boolean wonA = countA >= geometry.getWinLength() && hasLine(bitsA);
+        boolean wonB = countB >= geometry.getWinLength() && hasLine(bitsB);
+        long empty = full & ~(bitsA | bitsB);
+        for (int side = 0; side < 2; side++) {
+            int mine = side == 0 ? countA : countB;
+            int theirs = side == 0 ? countB : countA;
+            boolean won = side == 0 ? wonA : wonB;
+            boolean lost = side == 0 ? wonB : wonA;
+            if ((mine != theirs && mine + 1 != theirs) || won) {
+                continue;
+            }
+            long state = 2 * index + side;
+            int value;
+            if (lost) {
+                value = PerfectPlayTable.LOSS;
+            } else if (empty == 0) {
+                value = PerfectPlayTable.DRAW;
+            } else {
+                value = PerfectPlayTable.LOSS;
+                for (long moves = empty; moves != 0 && value != PerfectPlayTable.WIN;
+                     moves &= moves - 1) {
+                    int after = database.get(database.after(state,
+                            Long.numberOfTrailingZeros(moves)));
+                    if (after != PerfectPlayTable.UNKNOWN) {
+                        value = Math.max(value, PerfectPlayTable.WIN + PerfectPlayTable.LOSS
+                                - after);
+                    }
+                }
+            }
+            database.set(state, value);
+            switch (value) {
+                case PerfectPlayTable.WIN:
+                    wins += 1;
+                    break;
+                case PerfectPlayTable.DRAW:
+                    draws += 1;
+                    break;
+                default:
+                    losses += 1;
+                    break;
+            }
+        }
+    }
+
+    private boolean hasLine(long bits) {
+        for (long mask : lineMasks) {
+            if ((bits & mask) == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    public long getLosses() {
+        return losses;
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The mutable state of a search on one thread: the board to make and unmake the moves on, and the
+ * move buffers of each ply. It's reused by the searches of the thread, so the search doesn't
+ * allocate once the buffers are large enough.
+ *
+ * @author yfwz100
+ */
+final class SearchContext {
+
+    private static final Board EMPTY = new Board();
+
+    final Board board = new Board();
+
+    /**
+     * The moves of each ply, written by {@link Board#getEmptyCells(int[])}.
+     */
+    int[][] moves = new int[0][];
+
+    /**
+     * The limits of the search, or null if it's unlimited.
+     */
+    SearchControl control;
+
+    /**
+     * The nodes visited since the last check of the limits.
+     */
+    int unchecked;
+
+    /**
+     * Whether the search is stopped by the limits. The scores are meaningless once it's set.
+     */
+    boolean aborted;
+
+    /**
+     * The counters of the search since the last reset, added to the {@link SearchStatistics}.
+     */
+    long nodes;
+    long evaluations;
+    long cutoffs;
+    long tableHits;
+    long boardCopies;
+
+    /**
+     * Whether the searches of the thread stay on it rather than being split across the executor,
+     * e.g. in the ranges of a batch. It's kept by {@link #reset(Board, SearchControl)}.
+     */
+    boolean serial;
+
+    /**
+     * The threat-space search of the thread, created on the first use.
+     */
+    ThreatSpaceSearch threats;
+
+    /**
+     * Prepare the context to search the given board.
+     *
+     * @param original the board to search.
+     * @param control  the limits of the search, or null if it's unlimited.
+     */
+    void reset(Board original, SearchControl control) {
+        this.control = control;
+        this.unchecked = 0;
+        this.aborted = false;
+        this.nodes = this.evaluations = this.cutoffs = this.tableHits = 0;
+        this.boardCopies = 1;
+        board.copyFrom(original);
+        int cells = original.getGeometry().getCells();
+        if (moves.length <= cells || moves[0].length < cells) {
+            moves = new int[cells + 1][cells];
+        }
+    }
+
+    /**
+     * Prepare the context to search the packed 3x3 position.
+     *
+     * @param position the position packed by {@link PackedPosition}.
+     * @param control  the limits of the search, or null if it's unlimited.
+     */
+    void reset(int position, SearchControl control) {
+        reset(EMPTY, control);
+        PackedPosition.unpack(position, board);
+    }
+
+    /**
+     * Count a visited node and check the limits regularly.
+     *
+     * @return true if the search should stop.
+     */
+    boolean visit() {
+        nodes += 1;
+        if (control != null && ++unchecked >= SearchControl.CHECK_INTERVAL) {
+            aborted = control.check(unchecked);
+            unchecked = 0;
+        }
+        return aborted;
+    }
+}
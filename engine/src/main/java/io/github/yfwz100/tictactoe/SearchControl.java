@@ -0,0 +1,48 @@
+package io.github.yfwz100.tictactoe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The shared state of a limited search, checked by all the threads of the search.
+ *
+ * @author yfwz100
+ */
+final class SearchControl {
+
+    /**
+     * The number of nodes between two checks of the limits.
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    private final long start = System.nanoTime();
+    private final long budget;
+    private final long maxNodes;
+    private final CancellationToken token;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean aborted = false;
+
+    SearchControl(SearchLimits limits, CancellationToken token) {
+        this.budget = limits.getTimeMillis() > 0 ? limits.getTimeMillis() * 1000000L : Long.MAX_VALUE;
+        this.maxNodes = limits.getMaxNodes() > 0 ? limits.getMaxNodes() : Long.MAX_VALUE;
+        this.token = token;
+    }
+
+    /**
+     * Count the nodes visited since the last check and check the limits.
+     *
+     * @param visited the nodes visited since the last check.
+     * @return true if the search should stop.
+     */
+    boolean check(int visited) {
+        if (!aborted && (nodes.addAndGet(visited) > maxNodes
+                || System.nanoTime() - start > budget
+                || (token != null && token.isCancelled()))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+}
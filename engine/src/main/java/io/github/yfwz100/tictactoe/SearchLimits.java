@@ -0,0 +1,64 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The limits of an iterative deepening search. A limit of 0 or less means unlimited.
+ *
+ * @author yfwz100
+ */
+public class SearchLimits {
+    private int maxDepth;
+    private long timeMillis;
+    private long maxNodes;
+
+    /**
+     * Construct the limits without any limit.
+     */
+    public SearchLimits() {
+    }
+
+    /**
+     * Construct the limits.
+     *
+     * @param maxDepth   the maximum plies to search.
+     * @param timeMillis the wall-clock budget in milliseconds.
+     * @param maxNodes   the maximum nodes to visit.
+     */
+    public SearchLimits(int maxDepth, long timeMillis, long maxNodes) {
+        this.maxDepth = maxDepth;
+        this.timeMillis = timeMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public void setTimeMillis(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchLimits{" +
+                "maxDepth=" + maxDepth +
+                ", timeMillis=" + timeMillis +
+                ", maxNodes=" + maxNodes +
+                '}';
+    }
+}
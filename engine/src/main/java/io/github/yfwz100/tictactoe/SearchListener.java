@@ -0,0 +1,20 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * Notified of every search of the {@link Agent}, on the thread of the search.
+ *
+ * @author yfwz100
+ */
+public interface SearchListener {
+
+    /**
+     * Called when a search is finished.
+     *
+     * @param board      the board searched, which must not be modified.
+     * @param mark       the mark of the player.
+     * @param choice     the choice, or null if there's no empty cell.
+     * @param statistics the statistics of the search.
+     */
+    void onSearchFinished(Board board, Board.Mark mark, Agent.Choice choice,
+                          SearchStatistics statistics);
+}
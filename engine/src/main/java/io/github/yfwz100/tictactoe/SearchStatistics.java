@@ -0,0 +1,227 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The statistics of the searches of the {@link Agent}, either of one call or cumulative. The
+ * search counts on plain fields of each thread and adds them here once per call, so they're cheap
+ * enough to be always on.
+ *
+ * @author yfwz100
+ */
+public class SearchStatistics {
+    private long searches;
+    private long nodes;
+    private long evaluations;
+    private long cutoffs;
+    private long tableHits;
+    private long perfectPlayHits;
+    private long resultCacheHits;
+    private long boardCopies;
+    private int depth;
+    private long nanos;
+
+    /**
+     * Construct the empty statistics.
+     */
+    public SearchStatistics() {
+    }
+
+    /**
+     * Construct the copy of the statistics.
+     *
+     * @param other the statistics to copy.
+     */
+    public SearchStatistics(SearchStatistics other) {
+        add(other);
+    }
+
+    /**
+     * Get the number of the searches, i.e. the calls of
+     * {@link Agent#getBestChoice(Board, Board.Mark, int)} and the like.
+     *
+     * @return the number of the searches.
+     */
+    public synchronized long getSearches() {
+        return searches;
+    }
+
+    /**
+     * Get the number of the visited nodes.
+     *
+     * @return the number of the nodes.
+     */
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of the leaves evaluated by the heuristic.
+     *
+     * @return the number of the evaluations.
+     */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Get the number of the beta cutoffs.
+     *
+     * @return the number of the cutoffs.
+     */
+    public synchronized long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Get the number of the probes found in the transposition table.
+     *
+     * @return the number of the hits.
+     */
+    public synchronized long getTableHits() {
+        return tableHits;
+    }
+
+    /**
+     * Get the number of the searches answered by the {@link PerfectPlayTable} or the
+     * {@link EndgameDatabase}.
+     *
+     * @return the number of the hits.
+     */
+    public synchronized long getPerfectPlayHits() {
+        return perfectPlayHits;
+    }
+
+    /**
+     * Get the number of the searches answered by the {@link ResultCache}.
+     *
+     * @return the number of the hits.
+     */
+    public synchronized long getResultCacheHits() {
+        return resultCacheHits;
+    }
+
+    /**
+     * Get the number of the boards copied for the searches, the only allocation-like cost left on
+     * the search path.
+     *
+     * @return the number of the copies.
+     */
+    public synchronized long getBoardCopies() {
+        return boardCopies;
+    }
+
+    /**
+     * Get the depth reached, i.e. the deepest completed search. For the cumulative statistics,
+     * it's the deepest of all the searches.
+     *
+     * @return the depth.
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the wall time.
+     *
+     * @return the wall time in nanoseconds.
+     */
+    public synchronized long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Get the visited nodes per second of the wall time.
+     *
+     * @return the nodes per second.
+     */
+    public synchronized double getNodesPerSecond() {
+        return nanos > 0 ? nodes * 1e9 / nanos : 0;
+    }
+
+    /**
+     * Add the counters of the search on the context.
+     */
+    synchronized void add(SearchContext context) {
+        nodes += context.nodes;
+        evaluations += context.evaluations;
+        cutoffs += context.cutoffs;
+        tableHits += context.tableHits;
+        boardCopies += context.boardCopies;
+    }
+
+    /**
+     * Add the other statistics.
+     */
+    synchronized void add(SearchStatistics other) {
+        synchronized (other) {
+            searches += other.searches;
+            nodes += other.nodes;
+            evaluations += other.evaluations;
+            cutoffs += other.cutoffs;
+            tableHits += other.tableHits;
+            perfectPlayHits += other.perfectPlayHits;
+            resultCacheHits += other.resultCacheHits;
+            boardCopies += other.boardCopies;
+            depth = Math.max(depth, other.depth);
+            nanos += other.nanos;
+        }
+    }
+
+    /**
+     * Record an answer of the {@link PerfectPlayTable}.
+     */
+    synchronized void addPerfectPlayHit() {
+        perfectPlayHits += 1;
+    }
+
+    /**
+     * Count the nodes searched outside the main search, e.g. by the {@link ThreatSpaceSearch}.
+     */
+    synchronized void addNodes(long nodes) {
+        this.nodes += nodes;
+    }
+
+    /**
+     * Record an answer of the {@link ResultCache}.
+     */
+    synchronized void addResultCacheHit() {
+        resultCacheHits += 1;
+    }
+
+    /**
+     * Finish the statistics of one search.
+     *
+     * @param depth the depth reached.
+     * @param nanos the wall time.
+     */
+    synchronized void finish(int depth, long nanos) {
+        this.searches = 1;
+        this.depth = depth;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Reset all the counters.
+     */
+    synchronized void clear() {
+        searches = nodes = evaluations = cutoffs = tableHits = perfectPlayHits = 0;
+        resultCacheHits = boardCopies = 0;
+        depth = 0;
+        nanos = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SearchStatistics{" +
+                "searches=" + searches +
+                ", nodes=" + nodes +
+                ", evaluations=" + evaluations +
+                ", cutoffs=" + cutoffs +
+                ", tableHits=" + tableHits +
+                ", perfectPlayHits=" + perfectPlayHits +
+                ", resultCacheHits=" + resultCacheHits +
+                ", boardCopies=" + boardCopies +
+                ", depth=" + depth +
+                ", nanos=" + nanos +
+                '}';
+    }
+}
@@ -0,0 +1,376 @@
+package io.github.yfwz100.tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Searches the forced wins by continuous threats on the large boards. The attacker only plays the
+ * moves which leave a line one mark short of complete and open, so the defender has to block its
+ * last cell, until the attacker has two such lines at once or completes one. As only the threats
+ * and the blocks are played, the wins many plies deep are found at a fraction of the nodes of the
+ * full-width search. The threats are found by the mark counts of the lines, the same counts
+ * behind {@link Board#getMinimumStepsToWin(Board.Mark)}.
+ * <p>
+ * The search is bounded by a node budget, and the positions which failed are remembered in a
+ * table of a fixed size. It isn't thread-safe; each thread uses its own instance.
+ *
+ * @author yfwz100
+ * @see Agent#setThreatSearchBudget(int)
+ */
+public class ThreatSpaceSearch {
+
+    /**
+     * The result when there's no move found.
+     */
+    public static final int NONE = -1;
+
+    private static final long SIDE_A = 0x2545f4914f6cdd1dL;
+    private static final long SIDE_B = 0x61c8864680b583ebL;
+
+    private int maxNodes;
+
+    /**
+     * The positions in which the attacker failed, with the threats it had left.
+     */
+    private final long[] failedKeys;
+    private final byte[] failedThreats;
+
+    private Board board = new Board();
+    private int[][] candidates = new int[0][];
+    private int[] stamps = new int[0];
+    private int stamp = 0;
+
+    private int firstThreat;
+    private int secondThreat;
+
+    private int[] principal = new int[0];
+    private int principalLength = 0;
+
+    private long nodes = 0;
+    private boolean exhausted = false;
+
+    /**
+     * Construct the search with the budget of 100000 nodes per call and 65536 failed positions.
+     */
+    public ThreatSpaceSearch() {
+        this(100000, 1 << 16);
+    }
+
+    /**
+     * Construct the search.
+     *
+     * @param maxNodes  the nodes to search per call at most.
+     * @param tableSize the number of the failed positions to remember, a power of 2.
+     */
+    public ThreatSpaceSearch(int maxNodes, int tableSize) {
+        if (Integer.bitCount(tableSize) != 1) {
+            throw new IllegalArgumentException("The table size must be a power of 2.");
+        }
+        this.maxNodes = maxNodes;
+        this.failedKeys = new long[tableSize];
+        this.failedThreats = new byte[tableSize];
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Find a forced win of the attacker by continuous threats. The threats are deepened one by
+     * one, so the win of the fewest threats is found.
+     *
+     * @param board    the board, not modified.
+     * @param attacker the mark of the attacker, to move.
+     * @return the first move of the win, or {@link #NONE} if none is found within the budget.
+     */
+    public int findWin(Board board, Board.Mark attacker) {
+        load(board);
+        principalLength = 0;
+        boolean won = false;
+        for (int threats = 0; !won && !exhausted && threats <= maxThreats(); threats++) {
+            won = attack(attacker, threats, 0);
+        }
+        if (won) {
+            // The moves are recorded from the last one.
+            for (int i = 0, j = principalLength - 1; i < j; i++, j--) {
+                int move = principal[i];
+                principal[i] = principal[j];
+                principal[j] = move;
+            }
+            return principal[0];
+        }
+        return NONE;
+    }
+
+    /**
+     * Find a move which stops the forced win of the opponent found by
+     * {@link #findWin(Board, Board.Mark)}, the first one of
+     * {@link #findDefences(Board, Board.Mark, int[])}.
+     *
+     * @param board    the board, not modified.
+     * @param defender the mark of the defender, to move.
+     * @return the move, or {@link #NONE} if the opponent has no forced win found or every
+     * candidate loses.
+     */
+    public int findDefence(Board board, Board.Mark defender) {
+        int[] defences = new int[board.getGeometry().getCells()];
+        int count = findDefences(board, defender, defences);
+        return count > 0 ? defences[0] : NONE;
+    }
+
+    /**
+     * Find the moves which stop the forced win of the opponent found by
+     * {@link #findWin(Board, Board.Mark)}. The candidates are the cells of the winning line of the
+     * opponent and the cells where the defender makes a threat of its own. A move only stopping
+     * the threats may still lose to the quiet moves, so the defences are to be searched further.
+     * <p>
+     * The win and the refutations of the candidates share the node budget of the call. Only the
+     * candidates refuted within it are left out, so the ones not searched to the end are kept.
+     *
+     * @param board    the board, not modified.
+     * @param defender the mark of the defender, to move.
+     * @param defences the array to write the moves to, as long as the cells.
+     * @return the number of the moves, or {@link #NONE} if the opponent has no forced win found.
+     */
+    public int findDefences(Board board, Board.Mark defender, int[] defences) {
+        Board.Mark attacker = defender.getOpponent();
+        if (findWin(board, attacker) == NONE) {
+            return NONE;
+        }
+        int count = principalLength;
+        int[] moves = Arrays.copyOf(principal, count + board.getGeometry().getCells());
+        count = collectThreats(defender, moves, count);
+        int[] tried = new int[board.getGeometry().getCells()];
+        int found = 0;
+        for (int j = 0; j < count; j++) {
+            int move = moves[j];
+            if (this.board.flat(move) != Board.Mark.NA || tried[move] != 0) {
+                continue;
+            }
+            tried[move] = 1;
+            boolean lost = false;
+            if (!exhausted) {
+                this.board.makeMove(move, defender);
+                principalLength = 0;
+                lost = attack(attacker, maxThreats(), 0);
+                this.board.unmakeMove();
+            }
+            if (!lost) {
+                defences[found++] = move;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the moves of the last win found, from the first move of the attacker to its winning
+     * move, with the blocks of the defender between them.
+     *
+     * @return the moves in flatted indices.
+     */
+    public int[] getWinningLine() {
+        return Arrays.copyOf(principal, principalLength);
+    }
+
+    /**
+     * Get the nodes searched by the last call.
+     *
+     * @return the number of the nodes.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Check if the last call stopped at the node budget.
+     *
+     * @return true if the budget is used up.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    private void load(Board original) {
+        if (board.getGeometry() != original.getGeometry()) {
+            board = new Board(original.getGeometry());
+            Arrays.fill(failedKeys, 0);
+        }
+        board.copyFrom(original);
+        int cells = original.getGeometry().getCells();
+        if (stamps.length < cells) {
+            stamps = new int[cells];
+            principal = new int[cells];
+        }
+        nodes = 0;
+        exhausted = false;
+    }
+
+    private int maxThreats() {
+        return Math.min(Byte.MAX_VALUE, (board.getEmptyCount() + 1) / 2);
+    }
+
+    /**
+     * Search the threats of the attacker to move.
+     *
+     * @param attacker the attacker.
+     * @param threats  the threats the attacker may still make.
+     * @param ply      the depth of the recursion.
+     * @return true if it's a forced win, with the moves recorded backwards.
+     */
+    private boolean attack(Board.Mark attacker, int threats, int ply) {
+        if (nodes >= maxNodes) {
+            exhausted = true;
+            return false;
+        }
+        nodes += 1;
+        Board.Mark defender = attacker.getOpponent();
+        int win = findWinningCell(attacker);
+        if (win >= 0) {
+            principal[principalLength++] = win;
+            return true;
+        }
+        if (threats == 0) {
+            return false;
+        }
+        long key = board.getHash() ^ (attacker == Board.Mark.A ? SIDE_A : SIDE_B);
+        int slot = (int) key & (failedKeys.length - 1);
+        if (failedKeys[slot] == key && failedThreats[slot] >= threats) {
+            return false;
+        }
+
+        if (candidates.length <= ply) {
+            candidates = Arrays.copyOf(candidates, ply + 1);
+        }
+        if (candidates[ply] == null || candidates[ply].length < board.getGeometry().getCells()) {
+            candidates[ply] = new int[board.getGeometry().getCells()];
+        }
+        int[] moves = candidates[ply];
+        int count;
+        int forced = findWinningCell(defender);
+        if (forced >= 0) {
+            // The attacker has to block, and only a block making a threat goes on.
+            moves[0] = forced;
+            count = 1;
+        } else {
+            count = collectThreats(attacker, moves, 0);
+        }
+
+        for (int j = 0; j < count && !exhausted; j++) {
+            int move = moves[j];
+            board.makeMove(move, attacker);
+            if (forced >= 0 && findWinningCell(defender) >= 0) {
+                // The defender has another win.
+                board.unmakeMove();
+                continue;
+            }
+            findThreats(attacker, move);
+            if (secondThreat >= 0) {
+                board.unmakeMove();
+                // The defender blocks one and the attacker completes the other.
+                principal[principalLength++] = secondThreat;
+                principal[principalLength++] = firstThreat;
+                principal[principalLength++] = move;
+                return true;
+            }
+            int threat = firstThreat;
+            if (threat >= 0) {
+                board.makeMove(threat, defender);
+                boolean success = attack(attacker, threats - 1, ply + 1);
+                board.unmakeMove();
+                if (success) {
+                    board.unmakeMove();
+                    principal[principalLength++] = threat;
+                    principal[principalLength++] = move;
+                    return true;
+                }
+            }
+            board.unmakeMove();
+        }
+        if (!exhausted) {
+            failedKeys[slot] = key;
+            failedThreats[slot] = (byte) threats;
+        }
+        return false;
+    }
+
+    /**
+     * Find the cell completing a line of the player, i.e. a line one mark short and open.
+     *
+     * @return the cell, or -1 if there's none.
+     */
+    private int findWinningCell(Board.Mark mark) {
+        BoardGeometry geometry = board.getGeometry();
+        for (int l = 0; l < geometry.getLineCount(); l++) {
+            int cell = getWinningCell(mark, l);
+            if (cell >= 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private int getWinningCell(Board.Mark mark, int l) {
+        BoardGeometry geometry = board.getGeometry();
+        int k = geometry.getWinLength();
+        if (board.getLineMarkCount(mark, l) != k - 1
+                || board.getLineMarkCount(mark.getOpponent(), l) != 0) {
+            return -1;
+        }
+        for (int j = 0; j < k; j++) {
+            int cell = geometry.getLineCell(l, j);
+            if (board.flat(cell) == Board.Mark.NA) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the distinct cells completing the lines of the player through the move into
+     * {@link #firstThreat} and {@link #secondThreat}, -1 if there are fewer.
+     */
+    private void findThreats(Board.Mark mark, int move) {
+        BoardGeometry geometry = board.getGeometry();
+        firstThreat = -1;
+        secondThreat = -1;
+        for (int j = 0; j < geometry.getCellLineCount(move) && secondThreat < 0; j++) {
+            int cell = getWinningCell(mark, geometry.getCellLine(move, j));
+            if (cell >= 0) {
+                if (firstThreat < 0) {
+                    firstThreat = cell;
+                } else if (cell != firstThreat) {
+                    secondThreat = cell;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the empty cells which make a threat of the player, i.e. the cells of the open lines
+     * two marks short, each once.
+     *
+     * @return the new count of the moves.
+     */
+    private int collectThreats(Board.Mark mark, int[] moves, int count) {
+        BoardGeometry geometry = board.getGeometry();
+        int k = geometry.getWinLength();
+        stamp += 1;
+        for (int l = 0; l < geometry.getLineCount(); l++) {
+            if (board.getLineMarkCount(mark, l) != k - 2
+                    || board.getLineMarkCount(mark.getOpponent(), l) != 0) {
+                continue;
+            }
+            for (int j = 0; j < k; j++) {
+                int cell = geometry.getLineCell(l, j);
+                if (board.flat(cell) == Board.Mark.NA && stamps[cell] != stamp) {
+                    stamps[cell] = stamp;
+                    moves[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.yfwz100.tictactoe;
+
+/**
+ * The fixed-size transposition table of the search. Each slot keeps one entry packed in a long,
+ * with the key stored xor-ed with the entry so that a torn write from another thread is detected
+ * as a miss instead of a corrupted hit.
+ *
+ * @author yfwz100
+ */
+public class TranspositionTable {
+
+    /**
+     * The stored value is exact.
+     */
+    public static final int EXACT = 0;
+
+    /**
+     * The stored value is a lower bound (the search failed high).
+     */
+    public static final int LOWER = 1;
+
+    /**
+     * The stored value is an upper bound (the search failed low).
+     */
+    public static final int UPPER = 2;
+
+    /**
+     * The move stored when there's no best move.
+     */
+    public static final int NO_MOVE = 0xff;
+
+    private static final long OCCUPIED = 1L << 50;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    // The counters are not synchronized, so they are approximate when shared by several threads.
+    private long probes;
+    private long hits;
+    private long stores;
+    private long overwrites;
+
+    /**
+     * Construct a table of the given number of slots.
+     *
+     * @param capacity the number of slots, rounded up to a power of two.
+     */
+    public TranspositionTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.keys = new long[size];
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Look up the entry of the given key.
+     *
+     * @param key the key.
+     * @return the packed entry, or 0 if it's missing.
+     */
+    public long probe(long key) {
+        probes += 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        long entry = entries[slot];
+        if (entry != 0 && (keys[slot] ^ entry) == key) {
+            hits += 1;
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Store an entry. The entry of the same key is kept if it was searched deeper.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @param depth the remaining depth of the search.
+     * @param bound the bound type, one of {@link #EXACT}, {@link #LOWER} and {@link #UPPER}.
+     * @param move  the best move, or {@link #NO_MOVE}.
+     */
+    public void store(long key, int value, int depth, int bound, int move) {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        long old = entries[slot];
+        if (old != 0) {
+            if ((keys[slot] ^ old) != key) {
+                overwrites += 1;
+            } else if (getDepth(old) > depth) {
+                return;
+            }
+        }
+        long entry = (value & 0xffffffffL)
+                | ((long) (depth & 0xff) << 32)
+                | ((long) (move & 0xff) << 40)
+                | ((long) bound << 48)
+                | OCCUPIED;
+        entries[slot] = entry;
+        keys[slot] = key ^ entry;
+        stores += 1;
+    }
+
+    public static int getValue(long entry) {
+        return (int) entry;
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 32) & 0xff;
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry >>> 40) & 0xff;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> 48) & 0x3;
+    }
+
+    /**
+     * Remove all the entries. The counters are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            keys[i] = 0;
+            entries[i] = 0;
+        }
+    }
+
+    /**
+     * Reset the counters.
+     */
+    public void resetStatistics() {
+        probes = hits = stores = overwrites = 0;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    /**
+     * Get the number of stores that replaced the entry of another position.
+     *
+     * @return the number of overwrites.
+     */
+    public long getOverwrites() {
+        return overwrites;
+    }
+
+    /**
+     * Get the ratio of the hits to the probes.
+     *
+     * @return the hit rate, 0 if never probed.
+     */
+    public double getHitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    @Override
+    public String toString() {
+        return "TranspositionTable{" +
+                "capacity=" + entries.length +
+                ", probes=" + probes +
+                ", hits=" + hits +
+                ", stores=" + stores +
+                ", overwrites=" + overwrites +
+                '}';
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AgentTest {
+
+    private final Agent agent = Agent.getInstance();
+
+    @Test
+    public void testTakesTheWin() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.B);
+        board.place(0, 1, Board.Mark.B);
+        board.place(1, 0, Board.Mark.A);
+        board.place(1, 1, Board.Mark.A);
+        Agent.Choice choice = agent.getBestChoice(board, Board.Mark.B, 3);
+        assertEquals(0, choice.getX());
+        assertEquals(2, choice.getY());
+        assertTrue(choice.getUtility() > 0);
+    }
+
+    @Test
+    public void testEmptyBoardIsDraw() {
+        Agent.Choice choice = agent.search(new Board(), Board.Mark.A, 9);
+        assertEquals(0, choice.getUtility());
+    }
+
+    @Test
+    public void testPerfectPlayTableMatchesSearch() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.A);
+        assertNotNull(agent.getPerfectPlayTable());
+        Agent.Choice table = agent.getBestChoice(board, Board.Mark.B, 9);
+        Agent.Choice search = agent.search(board, Board.Mark.B, 9);
+        assertEquals(search.getX(), table.getX());
+        assertEquals(search.getY(), table.getY());
+        assertEquals(0, table.getUtility());
+    }
+
+    @Test
+    public void testParallelSearchMatches() {
+        Board board = new Board(7, 7, 4);
+        board.place(3, 3, Board.Mark.A);
+        board.place(2, 3, Board.Mark.B);
+        Agent.Choice single = agent.getBestChoice(board, Board.Mark.A, 3);
+        agent.setParallelism(4);
+        try {
+            Agent.Choice parallel = agent.getBestChoice(board, Board.Mark.A, 3);
+            assertEquals(single.toString(), parallel.toString());
+        } finally {
+            agent.setParallelism(1);
+        }
+    }
+
+    @Test
+    public void testParallelismChangedWhileSearching() throws Exception {
+        final Board board = new Board(7, 7, 4);
+        board.place(3, 3, Board.Mark.A);
+        final String expected = agent.getBestChoice(board, Board.Mark.B, 2).toString();
+        final Throwable[] failure = new Throwable[1];
+        Thread searcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int round = 0; round < 200; round++) {
+                        agent.getTranspositionTable().clear();
+                        assertEquals(expected, agent.getBestChoice(board, Board.Mark.B, 2)
+                                .toString());
+                    }
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        searcher.start();
+        try {
+            while (searcher.isAlive()) {
+                agent.setParallelism(2);
+                agent.setParallelism(3);
+            }
+        } finally {
+            agent.setParallelism(1);
+        }
+        searcher.join();
+        assertNull(failure[0]);
+    }
+
+    @Test
+    public void testBatchMatchesSingleChoices() {
+        Random random = new Random(42);
+        Board[] boards = new Board[300];
+        Board.Mark[] marks = new Board.Mark[boards.length];
+        int[] positions = new int[boards.length];
+        for (int p = 0; p < boards.length; p++) {
+            boards[p] = new Board();
+            marks[p] = Board.Mark.A;
+            int[] moves = new int[9];
+            for (int ply = random.nextInt(8); ply > 0; ply--) {
+                int count = boards[p].getEmptyCells(moves);
+                boards[p].makeMove(moves[random.nextInt(count)], marks[p]);
+                marks[p] = marks[p].getOpponent();
+            }
+            positions[p] = PackedPosition.pack(boards[p], marks[p]);
+        }
+        agent.setParallelism(2);
+        try {
+            for (int depth : new int[]{2, 9}) {
+                Agent.Choice[] choices = agent.getBestChoices(boards, marks, depth);
+                int[] moves = agent.getBestMoves(positions, depth);
+                for (int p = 0; p < boards.length; p++) {
+                    Agent.Choice single = agent.getBestChoice(boards[p], marks[p], depth);
+                    assertEquals(single.toString(), choices[p].toString());
+                    assertEquals(single.getX() * 3 + single.getY(), moves[p]);
+                }
+            }
+        } finally {
+            agent.setParallelism(1);
+        }
+    }
+
+    @Test
+    public void testStatisticsAreReported() {
+        final SearchStatistics[] reported = new SearchStatistics[1];
+        SearchListener listener = new SearchListener() {
+            @Override
+            public void onSearchFinished(Board board, Board.Mark mark, Agent.Choice choice,
+                                         SearchStatistics statistics) {
+                reported[0] = statistics;
+            }
+        };
+        long searches = agent.getStatistics().getSearches();
+        agent.addSearchListener(listener);
+        try {
+            agent.getBestChoice(new Board(5, 5, 4), Board.Mark.A, 3);
+        } finally {
+            agent.removeSearchListener(listener);
+        }
+        assertEquals(3, reported[0].getDepth());
+        assertTrue(reported[0].getNodes() > 25);
+        assertTrue(reported[0].getEvaluations() > 0);
+        assertEquals(1, reported[0].getBoardCopies());
+        assertTrue(agent.getStatistics().getSearches() > searches);
+    }
+
+    @Test
+    public void testCancelledSearchStillChooses() {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        Agent.Choice choice = agent.getBestChoice(new Board(15, 15, 5), Board.Mark.A,
+                new SearchLimits(), token);
+        assertNotNull(choice);
+    }
+
+    @Test
+    public void testAnalysisScoresEveryMove() {
+        Board board = new Board(5, 5, 4);
+        board.place(2, 2, Board.Mark.A);
+        board.place(1, 2, Board.Mark.B);
+        final int[] analyzed = new int[1];
+        AnalysisListener listener = new AnalysisListener() {
+            @Override
+            public void onMoveAnalyzed(Agent.Choice choice, int depth) {
+                analyzed[0] += 1;
+            }
+        };
+        final int[] searches = new int[1];
+        SearchListener searchListener = new SearchListener() {
+            @Override
+            public void onSearchFinished(Board board, Board.Mark mark, Agent.Choice choice,
+                                         SearchStatistics statistics) {
+                searches[0] += 1;
+            }
+        };
+        agent.addSearchListener(searchListener);
+        Agent.Choice[] analysis;
+        try {
+            analysis = agent.analyze(board, Board.Mark.A, new SearchLimits(3, 0, 0), null,
+                    listener);
+        } finally {
+            agent.removeSearchListener(searchListener);
+        }
+        // The analysis isn't taken for a search of a move.
+        assertEquals(0, searches[0]);
+        assertEquals(23, analysis.length);
+        assertEquals(3 * 23, analyzed[0]);
+        Agent.Choice best = analysis[0];
+        for (Agent.Choice choice : analysis) {
+            if (choice.getUtility() > best.getUtility()) {
+                best = choice;
+            }
+        }
+        assertEquals(agent.getBestChoice(board, Board.Mark.A, 3).toString(), best.toString());
+    }
+
+    @Test
+    public void testAnalysisFindsTheGameValues() {
+        Board board = new Board();
+        board.place(1, 1, Board.Mark.A);
+        Agent.Choice[] analysis = agent.analyze(board, Board.Mark.B, new SearchLimits(), null,
+                null);
+        assertEquals(8, analysis.length);
+        for (Agent.Choice choice : analysis) {
+            // The edges lose and the corners draw.
+            boolean corner = choice.getX() != 1 && choice.getY() != 1;
+            assertTrue(corner ? choice.getUtility() == 0 : choice.getUtility() < 0);
+        }
+    }
+
+    @Test
+    public void testFullBoardHasNoChoice() {
+        Board board = new Board(1, 1, 1);
+        board.place(0, 0, Board.Mark.A);
+        assertNull(agent.getBestChoice(board, Board.Mark.B, 1));
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BoardTest {
+
+    @Test
+    public void testPlaceAndGet() {
+        Board board = new Board();
+        board.place(1, 2, Board.Mark.A);
+        board.place(2, 0, Board.Mark.B);
+        assertEquals(Board.Mark.A, board.get(1, 2));
+        assertEquals(Board.Mark.B, board.flat(6));
+        assertEquals(Board.Mark.NA, board.get(0, 0));
+        assertEquals(7, board.getEmptyCount());
+    }
+
+    @Test
+    public void testStatus() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.B);
+        board.place(1, 1, Board.Mark.B);
+        assertEquals(Board.Status.RUNNING, board.getStatus());
+        board.place(2, 2, Board.Mark.B);
+        assertEquals(Board.Status.B_WIN, board.getStatus());
+        assertTrue(board.isLastMoveWinning());
+        board.place(2, 2, Board.Mark.NA);
+        assertEquals(Board.Status.RUNNING, board.getStatus());
+    }
+
+    @Test
+    public void testMakeAndUnmakeMove() {
+        Board board = new Board(15, 15, 5);
+        board.place(7, 7, Board.Mark.A);
+        Board original = board.clone();
+        board.makeMove(8, Board.Mark.B);
+        board.makeMove(100, Board.Mark.A);
+        assertNotEquals(original.getHash(), board.getHash());
+        board.unmakeMove();
+        board.unmakeMove();
+        assertEquals(original.getHash(), board.getHash());
+        assertEquals(original.getOpenLineCount(Board.Mark.B), board.getOpenLineCount(Board.Mark.B));
+        assertEquals(7 * 15 + 7, board.getLastMove());
+    }
+
+    @Test
+    public void testSymmetricBoardsShareCanonicalHash() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.A);
+        board.place(0, 1, Board.Mark.B);
+        Board mirrored = new Board();
+        mirrored.place(2, 2, Board.Mark.A);
+        mirrored.place(1, 2, Board.Mark.B);
+        assertNotEquals(board.getHash(), mirrored.getHash());
+        assertEquals(board.getHash(board.getCanonicalSymmetry()),
+                mirrored.getHash(mirrored.getCanonicalSymmetry()));
+    }
+
+    @Test
+    public void testLargeBoard() {
+        Board board = new Board(15, 15, 5);
+        for (int y = 3; y < 7; y++) {
+            board.place(14, y, Board.Mark.A);
+        }
+        assertEquals(1, board.getMinimumStepsToWin(Board.Mark.A));
+        assertFalse(board.hasWon(Board.Mark.A));
+        board.place(14, 7, Board.Mark.A);
+        assertEquals(Board.Status.A_WIN, board.getStatus());
+    }
+}
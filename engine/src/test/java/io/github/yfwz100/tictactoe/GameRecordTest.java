@@ -0,0 +1,53 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GameRecordTest {
+
+    @Test
+    public void testGamesRoundTrip() throws Exception {
+        int[][] games = {{4, 0, 8, 2, 1, 7, 6, 3, 5}, {0, 3, 1, 4, 2}, {}};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes, BoardGeometry.STANDARD);
+        for (int g = 0; g < games.length; g++) {
+            writer.writeGame(g == 1 ? Board.Mark.B : Board.Mark.A, games[g], games[g].length);
+        }
+        writer.close();
+        // the header, then 1 byte of count and a byte per 2 moves of each game.
+        assertEquals(8 + 6 + 4 + 1, bytes.size());
+
+        GameRecordReader reader =
+                new GameRecordReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(BoardGeometry.STANDARD, reader.getGeometry());
+        int[] moves = new int[9];
+        for (int g = 0; g < games.length; g++) {
+            int count = reader.readGame(moves);
+            assertEquals(games[g].length, count);
+            assertArrayEquals(games[g], Arrays.copyOf(moves, count));
+            assertEquals(g == 1 ? Board.Mark.B : Board.Mark.A, reader.getFirstMover());
+        }
+        assertEquals(-1, reader.readGame(moves));
+        reader.close();
+    }
+
+    @Test
+    public void testLargeBoardUsesAByteAMove() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes, BoardGeometry.of(15, 15, 5));
+        writer.writeGame(Board.Mark.A, new int[]{112, 224, 0}, 3);
+        writer.close();
+        GameRecordReader reader =
+                new GameRecordReader(new ByteArrayInputStream(bytes.toByteArray()));
+        int[] moves = new int[225];
+        assertEquals(3, reader.readGame(moves));
+        assertEquals(224, moves[1]);
+        assertEquals(8 + 1 + 3, bytes.size());
+    }
+}
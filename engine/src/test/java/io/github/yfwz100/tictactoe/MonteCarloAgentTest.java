@@ -0,0 +1,55 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MonteCarloAgentTest {
+
+    @Test
+    public void testTakesTheWin() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.B);
+        board.place(0, 1, Board.Mark.B);
+        board.place(1, 0, Board.Mark.A);
+        board.place(1, 1, Board.Mark.A);
+        MonteCarloAgent agent = new MonteCarloAgent();
+        agent.setSeed(42);
+        agent.setIterations(2000);
+        Agent.Choice choice = agent.getBestChoice(board, Board.Mark.B);
+        assertEquals(0, choice.getX());
+        assertEquals(2, choice.getY());
+        assertTrue(choice.getUtility() > 0);
+        assertEquals(2000, agent.getLastPlayouts());
+    }
+
+    @Test
+    public void testReusesTheSubtree() {
+        Board board = new Board(7, 7, 4);
+        MonteCarloAgent agent = new MonteCarloAgent();
+        agent.setSeed(42);
+        agent.setIterations(5000);
+        board.addCellNotifier(agent);
+        Agent.Choice choice = agent.getBestChoice(board, Board.Mark.A);
+        board.place(choice.getX(), choice.getY(), Board.Mark.A);
+        assertTrue(agent.getRootVisits() > 0);
+        int visits = agent.getRootVisits();
+        agent.getBestChoice(board, Board.Mark.B);
+        assertEquals(visits + 5000, agent.getRootVisits());
+
+        // a board the tree doesn't follow starts a new tree.
+        agent.getBestChoice(new Board(7, 7, 4), Board.Mark.A);
+        assertEquals(5000, agent.getRootVisits());
+    }
+
+    @Test
+    public void testGameOverHasNoChoice() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.A);
+        board.place(0, 1, Board.Mark.A);
+        board.place(0, 2, Board.Mark.A);
+        assertNull(new MonteCarloAgent().getBestChoice(board, Board.Mark.B));
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PondererTest {
+
+    private final Agent agent = Agent.getInstance();
+
+    @Test
+    public void testTakesThePonderedAnswer() {
+        Board board = new Board(5, 5, 4);
+        board.place(2, 2, Board.Mark.B);
+        SearchLimits limits = new SearchLimits(3, 0, 0);
+        Ponderer ponderer = new Ponderer(agent, 25);
+        try {
+            ponderer.start(board, Board.Mark.A, limits);
+            board.place(0, 4, Board.Mark.A);
+            Agent.Choice pondered = ponderer.take(board, Board.Mark.B);
+            Agent.Choice searched = agent.getBestChoice(board, Board.Mark.B, limits, null);
+            assertEquals(searched.toString(), pondered.toString());
+            assertEquals(1, ponderer.getHits());
+        } finally {
+            ponderer.shutdown();
+        }
+    }
+
+    @Test
+    public void testMissesTheUnponderedReply() {
+        Board board = new Board(5, 5, 4);
+        board.place(2, 2, Board.Mark.B);
+        Ponderer ponderer = new Ponderer(agent, 1);
+        try {
+            ponderer.start(board, Board.Mark.A, new SearchLimits(3, 0, 0));
+            Agent.Choice likely = agent.getBestChoice(board, Board.Mark.A, 1);
+            board.place(likely.getX() == 0 ? 4 : 0, 0, Board.Mark.A);
+            assertNull(ponderer.take(board, Board.Mark.B));
+            assertEquals(1, ponderer.getMisses());
+        } finally {
+            ponderer.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelledTokenStopsWaiting() throws Exception {
+        Board board = new Board(7, 7, 4);
+        board.place(3, 3, Board.Mark.B);
+        Ponderer ponderer = new Ponderer(agent, 49);
+        final CancellationToken token = new CancellationToken();
+        try {
+            // Without limits, the answer is searched until it's cancelled.
+            ponderer.start(board, Board.Mark.A, new SearchLimits());
+            board.place(0, 0, Board.Mark.A);
+            Thread canceller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    token.cancel();
+                }
+            });
+            canceller.start();
+            long start = System.nanoTime();
+            assertNull(ponderer.take(board, Board.Mark.B, token));
+            assertTrue(System.nanoTime() - start < 5000000000L);
+            canceller.join();
+        } finally {
+            ponderer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class PositionCodecTest {
+
+    private static Board sample() {
+        Board board = new Board();
+        board.place(0, 0, Board.Mark.A);
+        board.place(1, 1, Board.Mark.B);
+        board.place(2, 1, Board.Mark.A);
+        return board;
+    }
+
+    @Test
+    public void test3x3RoundTrips() {
+        Board board = sample();
+        Board decoded = new Board();
+        PositionCodec.decode3x3(PositionCodec.encode3x3(board), decoded);
+        assertEquals(board.getHash(), decoded.getHash());
+        PositionCodec.fromIndex(PositionCodec.toIndex(board), decoded);
+        assertEquals(board.getHash(), decoded.getHash());
+        assertEquals(1 + 2 * 81 + 2187, PositionCodec.toIndex(board));
+    }
+
+    @Test
+    public void testLargeBoardRoundTrips() {
+        Board board = new Board(15, 15, 5);
+        board.place(7, 7, Board.Mark.A);
+        board.place(14, 14, Board.Mark.B);
+        byte[] bytes = new byte[PositionCodec.getEncodedLength(board.getGeometry())];
+        assertEquals(57, PositionCodec.encode(board, bytes, 0));
+        Board decoded = new Board(15, 15, 5);
+        decoded.place(0, 0, Board.Mark.B);
+        PositionCodec.decode(bytes, 0, decoded);
+        assertEquals(board.getHash(), decoded.getHash());
+        assertEquals(board.getStatus(), decoded.getStatus());
+        assertEquals(Board.Mark.NA, decoded.get(0, 0));
+        assertEquals(-1, decoded.getLastMove());
+    }
+
+    @Test
+    public void testSerializationUsesTheCodec() throws Exception {
+        Board board = sample();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(board);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Board read = (Board) in.readObject();
+        assertEquals(board.getHash(), read.getHash());
+        assertEquals(BoardGeometry.STANDARD, read.getGeometry());
+        read.place(0, 1, Board.Mark.B);
+        assertEquals(Board.Status.RUNNING, read.getStatus());
+    }
+}
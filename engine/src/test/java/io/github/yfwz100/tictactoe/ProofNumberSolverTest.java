@@ -0,0 +1,105 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProofNumberSolverTest {
+
+    @Test
+    public void testKnownResults() throws Exception {
+        ProofNumberSolver solver = new ProofNumberSolver(16 << 20);
+        assertEquals(ProofNumberSolver.Result.NOT_WIN,
+                solver.solve(new Board(), Board.Mark.A));
+        assertEquals(ProofNumberSolver.Result.WIN,
+                solver.solve(new Board(4, 4, 3), Board.Mark.A));
+
+        Board board = new Board();
+        board.place(1, 1, Board.Mark.A);
+        board.place(0, 1, Board.Mark.B);
+        assertEquals(ProofNumberSolver.Result.WIN, solver.solve(board, Board.Mark.A));
+        assertEquals(ProofNumberSolver.Result.NOT_WIN, solver.solve(board, Board.Mark.B));
+    }
+
+    @Test
+    public void testSmallTableIsCollected() throws Exception {
+        ProofNumberSolver solver = new ProofNumberSolver(256 << 10);
+        assertEquals(ProofNumberSolver.Result.NOT_WIN,
+                solver.solve(new Board(3, 4, 4), Board.Mark.A));
+        assertTrue(solver.getCollections() > 0);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        Board board = new Board(3, 4, 4);
+        ProofNumberSolver fresh = new ProofNumberSolver(16 << 20);
+        fresh.solve(board, Board.Mark.A);
+
+        File file = File.createTempFile("proof", ".bin");
+        try {
+            ProofNumberSolver stopped = new ProofNumberSolver(16 << 20);
+            final CancellationToken token = new CancellationToken();
+            stopped.setProgressInterval(0);
+            stopped.setProgressListener(new ProofNumberSolver.ProgressListener() {
+                @Override
+                public void onProgress(int proofNumber, int disproofNumber, long nodes,
+                                       double nodesPerSecond) {
+                    if (nodes >= 20000) {
+                        token.cancel();
+                    }
+                }
+
+                @Override
+                public void onCheckpointFailed(IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            stopped.setCheckpoint(file, Long.MAX_VALUE);
+            assertEquals(ProofNumberSolver.Result.UNKNOWN,
+                    stopped.solve(board, Board.Mark.A, token));
+
+            ProofNumberSolver resumed = new ProofNumberSolver(16 << 20);
+            resumed.restore(file, board, Board.Mark.A);
+            assertEquals(ProofNumberSolver.Result.NOT_WIN, resumed.solve(board, Board.Mark.A));
+            assertTrue(resumed.getNodes() < fresh.getNodes());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFailedCheckpointsStopTheProof() throws Exception {
+        ProofNumberSolver solver = new ProofNumberSolver(16 << 20);
+        File missing = new File(File.createTempFile("proof", ".bin").getPath() + ".d", "x.bin");
+        try {
+            solver.save(missing);
+            fail();
+        } catch (IllegalStateException e) {
+            // Nothing is solved yet.
+        }
+        final int[] failures = new int[1];
+        solver.setCheckpoint(missing, 0);
+        solver.setProgressListener(new ProofNumberSolver.ProgressListener() {
+            @Override
+            public void onProgress(int proofNumber, int disproofNumber, long nodes,
+                                   double nodesPerSecond) {
+            }
+
+            @Override
+            public void onCheckpointFailed(IOException e) {
+                failures[0] += 1;
+            }
+        });
+        try {
+            solver.solve(new Board(3, 4, 4), Board.Mark.A);
+            fail();
+        } catch (IOException e) {
+            assertEquals(ProofNumberSolver.MAX_CHECKPOINT_FAILURES, failures[0]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCacheTest {
+
+    @Test
+    public void testSymmetricPositionsShareEntry() {
+        ResultCache cache = new ResultCache(64);
+        Board board = new Board(4, 4, 3);
+        board.place(0, 0, Board.Mark.A);
+        cache.put(board, Board.Mark.B, 2, new Agent.Choice(0, 1, 7));
+
+        Board mirrored = new Board(4, 4, 3);
+        mirrored.place(3, 3, Board.Mark.A);
+        Agent.Choice choice = cache.get(mirrored, Board.Mark.B, 2);
+        assertNotNull(choice);
+        assertEquals(7, choice.getUtility());
+        // The move is mapped back onto the mirrored board.
+        assertTrue((choice.getX() == 3 && choice.getY() == 2)
+                || (choice.getX() == 2 && choice.getY() == 3));
+        assertNull(cache.get(mirrored, Board.Mark.A, 2));
+        assertNull(cache.get(mirrored, Board.Mark.B, 3));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testCapacityIsBounded() {
+        ResultCache cache = new ResultCache(16);
+        Board board = new Board(5, 5, 4);
+        for (int depth = 1; depth <= 100; depth++) {
+            cache.put(board, Board.Mark.A, depth, new Agent.Choice(2, 2, depth));
+        }
+        assertTrue(cache.size() <= cache.getCapacity());
+        assertEquals(100, cache.size() + cache.getEvictions());
+        // The latest entry is never the one evicted.
+        assertEquals(100, cache.get(board, Board.Mark.A, 100).getUtility());
+    }
+
+    @Test
+    public void testMemoryIsBounded() {
+        for (long bytes : new long[]{ResultCache.ENTRY_BYTES, 1000, 1 << 20}) {
+            ResultCache cache = ResultCache.ofMemory(bytes);
+            assertTrue(cache.getCapacity() > 0);
+            assertTrue((long) cache.getCapacity() * ResultCache.ENTRY_BYTES <= bytes);
+        }
+    }
+
+    @Test
+    public void testPrewarmSolvesSymmetricOpeningsOnce() {
+        Agent agent = Agent.getInstance();
+        ResultCache cache = new ResultCache(1024);
+        final int[] searches = new int[1];
+        SearchListener listener = new SearchListener() {
+            @Override
+            public void onSearchFinished(Board board, Board.Mark mark, Agent.Choice choice,
+                                         SearchStatistics statistics) {
+                searches[0] += 1;
+            }
+        };
+        agent.setResultCache(cache);
+        agent.addSearchListener(listener);
+        try {
+            // the empty board and the corner, edge and center openings, with either player first.
+            assertEquals(8, cache.prewarm(agent, BoardGeometry.STANDARD, 1, 2));
+            assertEquals(8, cache.size());
+            // The openings are searched without the cache of the agent and its listeners.
+            assertEquals(0, cache.getMisses());
+            assertEquals(0, searches[0]);
+            agent.removeSearchListener(listener);
+
+            Board board = new Board();
+            board.place(2, 0, Board.Mark.A);
+            Agent.Choice cached = agent.getBestChoice(board, Board.Mark.B, 2);
+            assertEquals(1, cache.getHits());
+            agent.setResultCache(null);
+            Agent.Choice searched = agent.getBestChoice(board, Board.Mark.B, 2);
+            assertEquals(searched.getUtility(), cached.getUtility());
+        } finally {
+            agent.removeSearchListener(listener);
+            agent.setResultCache(null);
+        }
+    }
+}
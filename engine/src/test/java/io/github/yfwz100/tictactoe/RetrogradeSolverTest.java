@@ -0,0 +1,79 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetrogradeSolverTest {
+
+    private static int valueOf(int utility) {
+        return Integer.signum(utility) + PerfectPlayTable.DRAW;
+    }
+
+    @Test
+    public void testMatchesSearch() {
+        BoardGeometry geometry = BoardGeometry.of(4, 3, 3);
+        EndgameDatabase database = EndgameDatabase.allocate(geometry);
+        new RetrogradeSolver(database).solve();
+        assertTrue(database.isSolved());
+
+        Agent agent = Agent.getInstance();
+        Random random = new Random(7);
+        int[] moves = new int[geometry.getCells()];
+        for (int game = 0; game < 20; game++) {
+            Board board = new Board(geometry);
+            Board.Mark mark = game % 2 == 0 ? Board.Mark.A : Board.Mark.B;
+            while (board.getStatus() == Board.Status.RUNNING) {
+                if (board.getEmptyCount() <= 8) {
+                    Agent.Choice choice = agent.search(board, mark, board.getEmptyCount());
+                    assertEquals(valueOf(choice.getUtility()), database.getValue(board, mark));
+                    // The database answers with the move and the distance of the search.
+                    agent.setEndgameDatabase(database);
+                    try {
+                        Agent.Choice answered = agent.getBestChoice(board, mark,
+                                board.getEmptyCount());
+                        assertEquals(choice.toString(), answered.toString());
+                    } finally {
+                        agent.setEndgameDatabase(null);
+                    }
+                }
+                board.makeMove(moves[random.nextInt(board.getEmptyCells(moves))], mark);
+                mark = mark.getOpponent();
+            }
+        }
+    }
+
+    @Test
+    public void testAgentAnswersFromMappedDatabase() throws Exception {
+        BoardGeometry geometry = BoardGeometry.of(3, 4, 3);
+        File file = File.createTempFile("endgame", ".bin");
+        file.delete();
+        try {
+            new RetrogradeSolver(EndgameDatabase.map(file, geometry)).solve();
+            EndgameDatabase database = EndgameDatabase.map(file, geometry);
+            assertTrue(database.isSolved());
+
+            Agent agent = Agent.getInstance();
+            Board board = new Board(geometry);
+            board.place(0, 0, Board.Mark.A);
+            board.place(1, 1, Board.Mark.B);
+            Agent.Choice searched = agent.getBestChoice(board, Board.Mark.A, 10);
+            agent.setEndgameDatabase(database);
+            try {
+                SearchStatistics before = agent.getStatistics();
+                Agent.Choice answered = agent.getBestChoice(board, Board.Mark.A, 10);
+                assertEquals(before.getPerfectPlayHits() + 1,
+                        agent.getStatistics().getPerfectPlayHits());
+                assertEquals(searched.toString(), answered.toString());
+            } finally {
+                agent.setEndgameDatabase(null);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
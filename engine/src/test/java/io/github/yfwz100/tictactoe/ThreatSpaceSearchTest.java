@@ -0,0 +1,185 @@
+package io.github.yfwz100.tictactoe;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreatSpaceSearchTest {
+
+    private static final BoardGeometry GEOMETRY = BoardGeometry.of(9, 9, 5);
+
+    private static Board randomBoard(Random random, int plies) {
+        Board board = new Board(GEOMETRY);
+        int[] moves = new int[GEOMETRY.getCells()];
+        Board.Mark mark = Board.Mark.A;
+        for (int ply = 0; ply < plies && board.getStatus() == Board.Status.RUNNING; ply++) {
+            board.makeMove(moves[random.nextInt(board.getEmptyCells(moves))], mark);
+            mark = mark.getOpponent();
+        }
+        return board;
+    }
+
+    private static Set<Integer> winningCells(Board board, Board.Mark mark) {
+        Set<Integer> cells = new HashSet<>();
+        for (int line = 0; line < GEOMETRY.getLineCount(); line++) {
+            if (board.getLineMarkCount(mark, line) == GEOMETRY.getWinLength() - 1
+                    && board.getLineMarkCount(mark.getOpponent(), line) == 0) {
+                for (int j = 0; j < GEOMETRY.getWinLength(); j++) {
+                    int cell = GEOMETRY.getLineCell(line, j);
+                    if (board.flat(cell) == Board.Mark.NA) {
+                        cells.add(cell);
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+    @Test
+    public void testWinningLinesAreForced() {
+        ThreatSpaceSearch search = new ThreatSpaceSearch();
+        Random random = new Random(1);
+        int found = 0;
+        for (int game = 0; game < 50; game++) {
+            Board board = randomBoard(random, 30);
+            Board.Mark attacker = Board.Mark.A;
+            if (board.getStatus() != Board.Status.RUNNING
+                    || search.findWin(board, attacker) == ThreatSpaceSearch.NONE) {
+                continue;
+            }
+            found += 1;
+            int[] line = search.getWinningLine();
+            for (int i = 0; i < line.length; i += 2) {
+                board.makeMove(line[i], attacker);
+                if (i + 1 < line.length) {
+                    // The defender can't win and has to block, or can't block a double threat.
+                    assertTrue(winningCells(board, attacker.getOpponent()).isEmpty());
+                    Set<Integer> threats = winningCells(board, attacker);
+                    assertTrue(threats.contains(line[i + 1]));
+                    if (threats.size() > 1) {
+                        assertEquals(i + 3, line.length);
+                    }
+                    board.makeMove(line[i + 1], attacker.getOpponent());
+                }
+            }
+            assertTrue(board.hasWon(attacker));
+        }
+        assertTrue(found > 0);
+    }
+
+    @Test
+    public void testAgentPlaysForcedWinAndDefence() {
+        ThreatSpaceSearch search = new ThreatSpaceSearch();
+        Random random = new Random(1);
+        Board board;
+        do {
+            board = randomBoard(random, 30);
+        } while (board.getStatus() != Board.Status.RUNNING
+                || search.findWin(board, Board.Mark.A) == ThreatSpaceSearch.NONE
+                || search.getWinningLine().length < 5);
+        int[] line = search.getWinningLine();
+
+        Agent agent = Agent.getInstance();
+        agent.setThreatSearchBudget(100000);
+        try {
+            Agent.Choice choice = agent.getBestChoice(board, Board.Mark.A, 1);
+            assertEquals(line[0], choice.getX() * GEOMETRY.getWidth() + choice.getY());
+            assertEquals(Agent.WIN_SCORE - line.length, choice.getUtility());
+
+            // The deepening search reports the plies of the winning line.
+            final int[] depth = new int[1];
+            SearchListener listener = new SearchListener() {
+                @Override
+                public void onSearchFinished(Board board, Board.Mark mark, Agent.Choice choice,
+                                             SearchStatistics statistics) {
+                    depth[0] = statistics.getDepth();
+                }
+            };
+            agent.addSearchListener(listener);
+            try {
+                choice = agent.getBestChoice(board, Board.Mark.A, new SearchLimits(), null);
+            } finally {
+                agent.removeSearchListener(listener);
+            }
+            assertEquals(line[0], choice.getX() * GEOMETRY.getWidth() + choice.getY());
+            assertEquals(line.length, depth[0]);
+
+            int[] defences = new int[GEOMETRY.getCells()];
+            int count = search.findDefences(board, Board.Mark.B, defences);
+            assertTrue(count > 0);
+            // The agent searches the defences and plays the best of them.
+            choice = agent.getBestChoice(board, Board.Mark.B, 1);
+            int defence = choice.getX() * GEOMETRY.getWidth() + choice.getY();
+            boolean found = false;
+            for (int j = 0; j < count; j++) {
+                found |= defences[j] == defence;
+            }
+            assertTrue(found);
+            board.makeMove(defence, Board.Mark.B);
+            assertEquals(ThreatSpaceSearch.NONE, search.findWin(board, Board.Mark.A));
+            assertTrue(!search.isExhausted());
+        } finally {
+            agent.setThreatSearchBudget(0);
+        }
+    }
+
+    @Test
+    public void testDefencesShareTheBudget() {
+        ThreatSpaceSearch search = new ThreatSpaceSearch(200, 1 << 10);
+        ThreatSpaceSearch full = new ThreatSpaceSearch();
+        Random random = new Random(1);
+        int[] defences = new int[GEOMETRY.getCells()];
+        int[] all = new int[GEOMETRY.getCells()];
+        for (int game = 0; game < 100; game++) {
+            Board board = randomBoard(random, 30);
+            if (board.getStatus() != Board.Status.RUNNING) {
+                continue;
+            }
+            int count = search.findDefences(board, Board.Mark.B, defences);
+            assertTrue(search.getNodes() <= 200);
+            if (count == ThreatSpaceSearch.NONE) {
+                continue;
+            }
+            // The defences not refuted within the budget are kept.
+            int fullCount = full.findDefences(board, Board.Mark.B, all);
+            for (int j = 0; j < fullCount; j++) {
+                boolean found = false;
+                for (int i = 0; i < count; i++) {
+                    found |= defences[i] == all[j];
+                }
+                assertTrue(found);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesSingleChoicesWithThreats() {
+        Random random = new Random(2);
+        Board[] boards = new Board[150];
+        Board.Mark[] marks = new Board.Mark[boards.length];
+        for (int p = 0; p < boards.length; p++) {
+            do {
+                boards[p] = randomBoard(random, 30);
+            } while (boards[p].getStatus() != Board.Status.RUNNING);
+            marks[p] = p % 2 == 0 ? Board.Mark.A : Board.Mark.B;
+        }
+        Agent agent = Agent.getInstance();
+        agent.setThreatSearchBudget(100000);
+        agent.setParallelism(2);
+        try {
+            Agent.Choice[] choices = agent.getBestChoices(boards, marks, 2);
+            for (int p = 0; p < boards.length; p++) {
+                Agent.Choice single = agent.getBestChoice(boards[p], marks[p], 2);
+                assertEquals(single.toString(), choices[p].toString());
+            }
+        } finally {
+            agent.setParallelism(1);
+            agent.setThreatSearchBudget(0);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.yfwz100.tictactoe.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.yfwz100.tictactoe.Agent;
+import io.github.yfwz100.tictactoe.Board;
+import io.github.yfwz100.tictactoe.BoardGeometry;
+
+/**
+ * The load generator of the {@link GameServer}. Every connection keeps a number of games in
+ * flight, pipelined on the connection, and plays random moves in them, starting a new game when
+ * one is over. It streams the moves per second and the latencies of the moves as CSV rows, e.g.
+ * <pre>
+ * java -cp ... io.github.yfwz100.tictactoe.tools.GameLoadGenerator --connections 8 --games 500
+ * </pre>
+ * The options are:
+ * <ul>
+ * <li>{@code --host HOST}, {@code --port N}: the server, localhost:7777 by default.</li>
+ * <li>{@code --connections N}: the number of connections, 8 by default.</li>
+ * <li>{@code --games N}: the number of games in flight on each connection, 128 by default.</li>
+ * <li>{@code --duration SECONDS}: the duration of the load, 10 by default.</li>
+ * <li>{@code --geometry WxHxK}: the board, 3x3x3 by default.</li>
+ * <li>{@code --interval MILLIS}: the interval of the streamed summaries.</li>
+ * </ul>
+ * The latency of a move is from the request to the reply, including the retries of the refused
+ * requests. An error reply makes the process exit with 1.
+ *
+ * @author yfwz100
+ */
+public class GameLoadGenerator {
+
+    private String host = "localhost";
+    private int port = 7777;
+    private int connections = 8;
+    private int games = 128;
+    private long duration = 10;
+    private BoardGeometry geometry = BoardGeometry.STANDARD;
+    private long interval = 1000;
+
+    private volatile boolean running = true;
+
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final List<LatencyHistogram> histograms = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        GameLoadGenerator generator = new GameLoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    generator.host = args[++i];
+                    break;
+                case "--port":
+                    generator.port = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    generator.connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--games":
+                    generator.games = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    generator.duration = Long.parseLong(args[++i]);
+                    break;
+                case "--geometry": {
+                    String[] parts = args[++i].split("x");
+                    generator.geometry = BoardGeometry.of(Integer.parseInt(parts[0]),
+                            Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    break;
+                }
+                case "--interval":
+                    generator.interval = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        try {
+            generator.run(out);
+        } finally {
+            out.close();
+        }
+        if (generator.errors.get() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run the load and stream the summaries.
+     *
+     * @param out the output of the summaries.
+     * @throws InterruptedException if interrupted while waiting for the connections.
+     */
+    public void run(PrintWriter out) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histograms.add(histogram);
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        drive(histogram);
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }, "load-" + i);
+            workers.add(worker);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        out.println("elapsed_s,moves,moves_per_s,games,busy,errors,p50_us,p99_us,max_us");
+        long end = start + duration * 1000000000L;
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.max(1, Math.min(interval, (end - System.nanoTime()) / 1000000)));
+            report(out, start);
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        report(out, start);
+    }
+
+    /**
+     * Drive the games of one connection until the time is up and the replies are all in.
+     */
+    private void drive(LatencyHistogram histogram) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.US_ASCII));
+            String create = "NEW " + geometry.getWidth() + "x" + geometry.getHeight() + "x"
+                    + geometry.getWinLength() + "\n";
+            Random random = new Random();
+            Map<Integer, Board> boards = new HashMap<>();
+            Map<Integer, String> requests = new HashMap<>();
+            Map<Integer, Long> sent = new HashMap<>();
+            int outstanding = games;
+            for (int i = 0; i < games; i++) {
+                out.write(create);
+            }
+            out.flush();
+            while (outstanding > 0) {
+                String line = in.readLine();
+                if (line == null) {
+                    throw new IOException("The server has closed the connection");
+                }
+                String[] parts = line.split(" ");
+                outstanding -= 1;
+                switch (parts[0]) {
+                    case "GAME": {
+                        int id = Integer.parseInt(parts[1]);
+                        boards.put(id, new Board(geometry));
+                        outstanding += move(out, id, boards.get(id), random, requests, sent);
+                        break;
+                    }
+                    case "MOVED": {
+                        int id = Integer.parseInt(parts[1]);
+                        histogram.record(System.nanoTime() - sent.remove(id));
+                        moves.incrementAndGet();
+                        Board board = boards.get(id);
+                        if (!"-".equals(parts[2])) {
+                            board.place(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                                    Board.Mark.B);
+                        }
+                        if (board.getStatus() != Board.Status.RUNNING
+                                || !Board.Status.RUNNING.name().equals(parts[4])) {
+                            boards.remove(id);
+                            requests.remove(id);
+                            finished.incrementAndGet();
+                            out.write("END " + id + "\n");
+                            outstanding += 1;
+                            if (running) {
+                                out.write(create);
+                                outstanding += 1;
+                            }
+                        } else if (running) {
+                            outstanding += move(out, id, board, random, requests, sent);
+                        }
+                        break;
+                    }
+                    case "ENDED":
+                        break;
+                    case "BUSY":
+                        refused.incrementAndGet();
+                        if (parts.length == 1) {
+                            out.write(create);
+                        } else {
+                            // retry the same move, keeping the time it was first sent.
+                            out.write(requests.get(Integer.parseInt(parts[1])));
+                        }
+                        outstanding += 1;
+                        break;
+                    default:
+                        errors.incrementAndGet();
+                        break;
+                }
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Play a random move on the local board and request it.
+     *
+     * @return the number of the requests sent.
+     */
+    private static int move(Writer out, int id, Board board, Random random,
+                            Map<Integer, String> requests, Map<Integer, Long> sent)
+            throws IOException {
+        Agent.Choice choice = Strategy.randomChoice(board, random);
+        board.place(choice.getX(), choice.getY(), Board.Mark.A);
+        String request = "MOVE " + id + " " + choice.getX() + " " + choice.getY() + "\n";
+        requests.put(id, request);
+        sent.put(id, System.nanoTime());
+        out.write(request);
+        return 1;
+    }
+
+    /**
+     * Write a summary. As in {@link SelfPlayTournament}, the intermediate percentiles are
+     * approximate and the final ones are exact.
+     */
+    private void report(PrintWriter out, long start) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : histograms) {
+            merged.merge(histogram);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long count = moves.get();
+        out.println(String.format(Locale.US, "%.3f,%d,%.1f,%d,%d,%d,%.1f,%.1f,%.1f",
+                elapsed, count, elapsed > 0 ? count / elapsed : 0, finished.get(), refused.get(),
+                errors.get(), merged.getPercentile(50) / 1e3, merged.getPercentile(99) / 1e3,
+                merged.getMax() / 1e3));
+        out.flush();
+    }
+}
@@ -0,0 +1,450 @@
+package io.github.yfwz100.tictactoe.tools;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.yfwz100.tictactoe.Agent;
+import io.github.yfwz100.tictactoe.Board;
+import io.github.yfwz100.tictactoe.BoardGeometry;
+
+/**
+ * The headless game service. It hosts many games over a line protocol on TCP, e.g.
+ * <pre>
+ * java -cp ... io.github.yfwz100.tictactoe.tools.GameServer --port 7777 --engine search:2
+ * </pre>
+ * The client plays A and moves first; the engine plays B. The requests and the replies are:
+ * <ul>
+ * <li>{@code NEW [WxHxK]}: create a game, 3x3x3 by default. The reply is {@code GAME <id>}.
+ * The replies to NEW come in the order of the requests.</li>
+ * <li>{@code MOVE <id> <x> <y>}: play the cell and let the engine reply. The reply is
+ * {@code MOVED <id> <x> <y> <status>} with the cell of the engine, or {@code -} for both if the
+ * game is over before the engine moves.</li>
+ * <li>{@code STATUS <id>}: the reply is {@code STATUS <id> <status> <cells>}, the cells in row
+ * order as {@code x}, {@code o} or {@code .}.</li>
+ * <li>{@code END <id>}: drop the game. The reply is {@code ENDED <id>}.</li>
+ * </ul>
+ * The status is one of the names of {@link Board.Status}. The errors are replied as
+ * {@code ERROR [<id>] <message>}. The moves are answered by the engine pool, so their replies
+ * may come out of order with the other replies; a client waits for MOVED before the next request
+ * of the same game.
+ * <p>
+ * The connections are served by one selector thread, and the games are plain objects, so a
+ * game costs a board and no thread. The engine moves run on a bounded pool with a bounded queue:
+ * when it's full, the move is refused with {@code BUSY <id>} and the client may retry, so the
+ * load is pushed back to the clients instead of queueing up. The same goes for NEW beyond the
+ * maximum number of games, replied with {@code BUSY}. A connection which doesn't read its
+ * replies isn't read either until it catches up. The games of a connection end with it.
+ *
+ * @author yfwz100
+ * @see GameLoadGenerator
+ */
+public class GameServer {
+
+    private static final int MAX_LINE = 256;
+    private static final int MAX_BACKLOG = 64 * 1024;
+
+    private int port = 7777;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queue = 1024;
+    private int maxGames = 100000;
+    private Strategy engine = Strategy.parse("search:2");
+
+    private final ConcurrentHashMap<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    /**
+     * The connections with new replies, to be registered for writing by the selector thread.
+     */
+    private final Queue<Connection> pending = new ConcurrentLinkedQueue<>();
+
+    private ThreadPoolExecutor executor;
+    private Selector selector;
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws IOException {
+        GameServer server = new GameServer();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    server.port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    server.threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--queue":
+                    server.queue = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-games":
+                    server.maxGames = Integer.parseInt(args[++i]);
+                    break;
+                case "--engine":
+                    server.engine = Strategy.parse(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        server.serve();
+    }
+
+    /**
+     * A game hosted by the server.
+     */
+    private static final class Session {
+        final int id;
+        final Connection owner;
+        final Board board;
+        final Random random = new Random();
+
+        /**
+         * The status and the cells after the last move, read by STATUS without the lock.
+         */
+        volatile String snapshot;
+
+        Session(int id, Connection owner, BoardGeometry geometry) {
+            this.id = id;
+            this.owner = owner;
+            this.board = new Board(geometry);
+            this.snapshot = describe(board);
+        }
+    }
+
+    /**
+     * A client connection: the partial request line read so far and the replies to write.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final StringBuilder line = new StringBuilder();
+        final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        final AtomicInteger backlog = new AtomicInteger();
+        final Set<Integer> games =
+                Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        volatile boolean closed = false;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * Queue the reply, from any thread.
+         */
+        void reply(String reply) {
+            if (closed) {
+                return;
+            }
+            byte[] bytes = (reply + "\n").getBytes(StandardCharsets.US_ASCII);
+            output.add(ByteBuffer.wrap(bytes));
+            backlog.addAndGet(bytes.length);
+            pending.add(this);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Serve until {@link #close()} is called.
+     *
+     * @throws IOException if the port can't be listened on.
+     */
+    public void serve() throws IOException {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queue), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "engine-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port), 1024);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println(String.format(Locale.US,
+                    "Listening on port %d with %d engine threads, engine %s",
+                    server.socket().getLocalPort(), threads, engine));
+            loop(server);
+        } finally {
+            server.close();
+            selector.close();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stop serving.
+     */
+    public void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    public long getMoves() {
+        return moves.get();
+    }
+
+    public long getRefused() {
+        return refused.get();
+    }
+
+    private void loop(ServerSocketChannel server) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (running) {
+            selector.select();
+            for (Connection connection = pending.poll(); connection != null;
+                 connection = pending.poll()) {
+                updateInterest(connection);
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    SocketChannel channel = server.accept();
+                    if (channel != null) {
+                        channel.configureBlocking(false);
+                        channel.socket().setTcpNoDelay(true);
+                        new Connection(channel);
+                    }
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isWritable()) {
+                        write(connection);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(connection, buffer);
+                    }
+                } catch (IOException e) {
+                    close(connection);
+                }
+            }
+        }
+    }
+
+    private void updateInterest(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        int ops = connection.output.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+        if (connection.backlog.get() < MAX_BACKLOG) {
+            ops |= SelectionKey.OP_READ;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private void write(Connection connection) throws IOException {
+        for (ByteBuffer bytes = connection.output.peek(); bytes != null;
+             bytes = connection.output.peek()) {
+            int written = connection.channel.write(bytes);
+            connection.backlog.addAndGet(-written);
+            if (bytes.hasRemaining()) {
+                break;
+            }
+            connection.output.poll();
+        }
+        updateInterest(connection);
+    }
+
+    private void read(Connection connection, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int count = connection.channel.read(buffer);
+        if (count < 0) {
+            close(connection);
+            return;
+        }
+        StringBuilder line = connection.line;
+        for (int i = 0; i < count; i++) {
+            char c = (char) (buffer.get(i) & 0xff);
+            if (c == '\n') {
+                handle(connection, line.toString().trim());
+                line.setLength(0);
+            } else if (line.length() < MAX_LINE) {
+                line.append(c);
+            } else {
+                connection.reply("ERROR line too long");
+                close(connection);
+                return;
+            }
+        }
+    }
+
+    private void close(Connection connection) {
+        connection.closed = true;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // It's closed anyway.
+        }
+        for (Integer id : connection.games) {
+            sessions.remove(id);
+        }
+    }
+
+    /**
+     * Handle a request on the selector thread. Only the moves are handed to the engine pool.
+     */
+    private void handle(Connection connection, String request) {
+        String[] parts = request.split("\\s+");
+        try {
+            switch (parts[0].toUpperCase(Locale.US)) {
+                case "NEW": {
+                    BoardGeometry geometry = BoardGeometry.STANDARD;
+                    if (parts.length > 1) {
+                        String[] sizes = parts[1].split("x");
+                        geometry = BoardGeometry.of(Integer.parseInt(sizes[0]),
+                                Integer.parseInt(sizes[1]), Integer.parseInt(sizes[2]));
+                    }
+                    if (sessions.size() >= maxGames) {
+                        refused.incrementAndGet();
+                        connection.reply("BUSY");
+                        break;
+                    }
+                    int id = nextId.incrementAndGet();
+                    sessions.put(id, new Session(id, connection, geometry));
+                    connection.games.add(id);
+                    connection.reply("GAME " + id);
+                    break;
+                }
+                case "MOVE": {
+                    Session session = find(connection, parts);
+                    if (session != null) {
+                        submit(session, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                    }
+                    break;
+                }
+                case "STATUS": {
+                    Session session = find(connection, parts);
+                    if (session != null) {
+                        connection.reply("STATUS " + session.id + " " + session.snapshot);
+                    }
+                    break;
+                }
+                case "END": {
+                    Session session = find(connection, parts);
+                    if (session != null) {
+                        sessions.remove(session.id);
+                        connection.games.remove(session.id);
+                        connection.reply("ENDED " + session.id);
+                    }
+                    break;
+                }
+                default:
+                    connection.reply("ERROR unknown request " + parts[0]);
+                    break;
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            connection.reply("ERROR malformed request " + request);
+        }
+    }
+
+    /**
+     * Find the game of the request, which must be owned by the connection.
+     */
+    private Session find(Connection connection, String[] parts) {
+        int id = Integer.parseInt(parts[1]);
+        Session session = sessions.get(id);
+        if (session == null || session.owner != connection) {
+            connection.reply("ERROR " + id + " unknown game");
+            return null;
+        }
+        return session;
+    }
+
+    private void submit(final Session session, final int x, final int y) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    session.owner.reply(move(session, x, y));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refused.incrementAndGet();
+            session.owner.reply("BUSY " + session.id);
+        }
+    }
+
+    /**
+     * Play the move of the client and the reply of the engine, on the engine pool.
+     *
+     * @return the reply to the client.
+     */
+    private String move(Session session, int x, int y) {
+        synchronized (session) {
+            Board board = session.board;
+            BoardGeometry geometry = board.getGeometry();
+            if (board.getStatus() != Board.Status.RUNNING) {
+                return "ERROR " + session.id + " game over";
+            }
+            if (x < 0 || x >= geometry.getHeight() || y < 0 || y >= geometry.getWidth()
+                    || board.get(x, y) != Board.Mark.NA) {
+                return "ERROR " + session.id + " illegal move";
+            }
+            board.place(x, y, Board.Mark.A);
+            String reply = "- -";
+            if (board.getStatus() == Board.Status.RUNNING) {
+                Agent.Choice choice = engine.choose(board, Board.Mark.B, session.random);
+                board.place(choice.getX(), choice.getY(), Board.Mark.B);
+                reply = choice.getX() + " " + choice.getY();
+            }
+            moves.incrementAndGet();
+            session.snapshot = describe(board);
+            return "MOVED " + session.id + " " + reply + " " + board.getStatus();
+        }
+    }
+
+    private static String describe(Board board) {
+        StringBuilder builder = new StringBuilder(board.getStatus().name()).append(' ');
+        int cells = board.getGeometry().getCells();
+        for (int i = 0; i < cells; i++) {
+            switch (board.flat(i)) {
+                case A:
+                    builder.append('x');
+                    break;
+                case B:
+                    builder.append('o');
+                    break;
+                default:
+                    builder.append('.');
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.yfwz100.tictactoe.tools;
+
+/**
+ * The histogram of latencies in nanoseconds with log-linear buckets: 8 buckets per power of two,
+ * so the percentiles are within 12.5% of the recorded values. It's not thread-safe; each thread
+ * records into its own histogram and they are merged for reporting.
+ *
+ * @author yfwz100
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = (64 - 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)] += 1;
+        total += 1;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Add the records of the other histogram into this one.
+     *
+     * @param other the other histogram.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Get the latency at the given percentile, i.e. the lower bound of its bucket.
+     *
+     * @param percentile the percentile, in (0, 100].
+     * @return the latency in nanoseconds, 0 if nothing is recorded.
+     */
+    public long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(lowerBound(i), max);
+            }
+        }
+        return 0;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) ((nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1));
+        return (exponent - 2) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 2;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 3);
+    }
+}
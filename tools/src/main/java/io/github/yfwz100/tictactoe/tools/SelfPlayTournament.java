@@ -0,0 +1,276 @@
+package io.github.yfwz100.tictactoe.tools;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.yfwz100.tictactoe.Agent;
+import io.github.yfwz100.tictactoe.Board;
+import io.github.yfwz100.tictactoe.BoardGeometry;
+import io.github.yfwz100.tictactoe.GameRecordWriter;
+
+/**
+ * The headless self-play runner. It plays the games between the strategies of A and B on all the
+ * cores and streams the summary as CSV rows or JSON lines, e.g.
+ * <pre>
+ * gradle :tools:run -Pargs="--games 1000000 --a search:1 --b perfect --openings 2 --format json"
+ * java -cp ... io.github.yfwz100.tictactoe.tools.SelfPlayTournament --geometry 7x7x4 --a search:2
+ * </pre>
+ * The options are:
+ * <ul>
+ * <li>{@code --games N}: the number of games, 1000 by default.</li>
+ * <li>{@code --threads N}: the number of threads, the number of cores by default.</li>
+ * <li>{@code --geometry WxHxK}: the board, 3x3x3 by default.</li>
+ * <li>{@code --a SPEC}, {@code --b SPEC}: the strategies, see {@link Strategy#parse(String)}.</li>
+ * <li>{@code --openings N}: the number of random moves before the strategies take over.</li>
+ * <li>{@code --seed N}: the seed of the random openings.</li>
+ * <li>{@code --alternate}: let B move first in the odd games.</li>
+ * <li>{@code --format csv|json}: the format of the summary.</li>
+ * <li>{@code --interval MILLIS}: the interval of the streamed summaries.</li>
+ * <li>{@code --out FILE}: write the summary to the file instead of the standard output.</li>
+ * <li>{@code --record FILE}: write the games to the file by {@link GameRecordWriter}.</li>
+ * </ul>
+ * Every game is also checked: an illegal or missing move counts as an error and the process exits
+ * with 1, so the runner works as a correctness check as well as a throughput benchmark.
+ *
+ * @author yfwz100
+ */
+public class SelfPlayTournament {
+
+    private int games = 1000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private BoardGeometry geometry = BoardGeometry.STANDARD;
+    private Strategy strategyA = Strategy.parse("search:1");
+    private Strategy strategyB = Strategy.parse("search:1");
+    private int openings = 0;
+    private long seed = 42;
+    private boolean alternate = false;
+    private boolean json = false;
+    private long interval = 1000;
+    private String recordFile = null;
+    private GameRecordWriter recorder = null;
+
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong played = new AtomicLong();
+    private final AtomicLong winsA = new AtomicLong();
+    private final AtomicLong winsB = new AtomicLong();
+    private final AtomicLong draws = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final List<LatencyHistogram> histograms = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        SelfPlayTournament tournament = new SelfPlayTournament();
+        PrintWriter out = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games":
+                    tournament.games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    tournament.threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--geometry": {
+                    String[] parts = args[++i].split("x");
+                    tournament.geometry = BoardGeometry.of(Integer.parseInt(parts[0]),
+                            Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    break;
+                }
+                case "--a":
+                    tournament.strategyA = Strategy.parse(args[++i]);
+                    break;
+                case "--b":
+                    tournament.strategyB = Strategy.parse(args[++i]);
+                    break;
+                case "--openings":
+                    tournament.openings = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    tournament.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--alternate":
+                    tournament.alternate = true;
+                    break;
+                case "--format":
+                    tournament.json = "json".equals(args[++i]);
+                    break;
+                case "--interval":
+                    tournament.interval = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    tournament.recordFile = args[++i];
+                    break;
+                case "--out":
+                    out = new PrintWriter(new OutputStreamWriter(
+                            new FileOutputStream(args[++i]), "UTF-8"));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (out == null) {
+            out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        }
+        try {
+            tournament.run(out);
+        } finally {
+            out.close();
+        }
+        if (tournament.errors.get() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Play all the games and stream the summaries.
+     *
+     * @param out the output of the summaries.
+     * @throws InterruptedException if interrupted while waiting for the games.
+     * @throws IOException          if the games can't be recorded.
+     */
+    public void run(PrintWriter out) throws InterruptedException, IOException {
+        if (recordFile != null) {
+            recorder = new GameRecordWriter(new FileOutputStream(recordFile), geometry);
+        }
+        try {
+            playAll(out);
+        } finally {
+            if (recorder != null) {
+                recorder.close();
+            }
+        }
+    }
+
+    private void playAll(PrintWriter out) throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histograms.add(histogram);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    play(histogram);
+                }
+            });
+        }
+        executor.shutdown();
+        if (!json) {
+            out.println("elapsed_s,games,a_wins,b_wins,draws,errors,games_per_s,"
+                    + "p50_us,p90_us,p99_us,max_us");
+        }
+        while (!executor.awaitTermination(interval, TimeUnit.MILLISECONDS)) {
+            report(out, start, false);
+        }
+        report(out, start, true);
+    }
+
+    private void play(LatencyHistogram histogram) {
+        Board empty = new Board(geometry);
+        Board board = new Board(geometry);
+        Random random = new Random();
+        int[] moves = new int[geometry.getCells()];
+        int[] history = new int[geometry.getCells()];
+        int width = geometry.getWidth();
+        for (long game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+            // every game has its own seed, so the openings don't depend on the scheduling.
+            random.setSeed(seed * 0x9e3779b97f4a7c15L + game);
+            board.copyFrom(empty);
+            Board.Mark mark = alternate && game % 2 == 1 ? Board.Mark.B : Board.Mark.A;
+            Board.Status status = board.getStatus();
+            Board.Mark first = mark;
+            int ply = 0;
+            for (; status == Board.Status.RUNNING; ply++) {
+                int move;
+                if (ply < openings) {
+                    move = moves[random.nextInt(board.getEmptyCells(moves))];
+                } else {
+                    Strategy strategy = mark == Board.Mark.A ? strategyA : strategyB;
+                    long begin = System.nanoTime();
+                    Agent.Choice choice = strategy.choose(board, mark, random);
+                    histogram.record(System.nanoTime() - begin);
+                    if (choice == null
+                            || board.get(choice.getX(), choice.getY()) != Board.Mark.NA) {
+                        errors.incrementAndGet();
+                        break;
+                    }
+                    move = choice.getX() * width + choice.getY();
+                }
+                board.makeMove(move, mark);
+                history[ply] = move;
+                mark = mark.getOpponent();
+                status = board.getStatus();
+            }
+            if (recorder != null) {
+                record(first, history, ply);
+            }
+            switch (status) {
+                case A_WIN:
+                    winsA.incrementAndGet();
+                    break;
+                case B_WIN:
+                    winsB.incrementAndGet();
+                    break;
+                case END:
+                    draws.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+            played.incrementAndGet();
+        }
+    }
+
+    private void record(Board.Mark first, int[] moves, int count) {
+        synchronized (recorder) {
+            try {
+                recorder.writeGame(first, moves, count);
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Write a summary. The histograms are read while the workers record into them, so the
+     * intermediate percentiles are approximate; the final ones are exact.
+     */
+    private void report(PrintWriter out, long start, boolean last) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : histograms) {
+            merged.merge(histogram);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long count = played.get();
+        double rate = elapsed > 0 ? count / elapsed : 0;
+        if (json) {
+            out.println(String.format(Locale.US, "{\"final\":%b,\"elapsed_s\":%.3f,"
+                            + "\"geometry\":\"%dx%dx%d\",\"a\":\"%s\",\"b\":\"%s\",\"threads\":%d,"
+                            + "\"games\":%d,\"a_wins\":%d,\"b_wins\":%d,\"draws\":%d,\"errors\":%d,"
+                            + "\"games_per_s\":%.1f,\"moves\":%d,\"p50_us\":%.1f,\"p90_us\":%.1f,"
+                            + "\"p99_us\":%.1f,\"max_us\":%.1f}",
+                    last, elapsed, geometry.getWidth(), geometry.getHeight(),
+                    geometry.getWinLength(), strategyA, strategyB, threads, count, winsA.get(),
+                    winsB.get(), draws.get(), errors.get(), rate, merged.getTotal(),
+                    merged.getPercentile(50) / 1e3, merged.getPercentile(90) / 1e3,
+                    merged.getPercentile(99) / 1e3, merged.getMax() / 1e3));
+        } else {
+            out.println(String.format(Locale.US, "%.3f,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f",
+                    elapsed, count, winsA.get(), winsB.get(), draws.get(), errors.get(), rate,
+                    merged.getPercentile(50) / 1e3, merged.getPercentile(90) / 1e3,
+                    merged.getPercentile(99) / 1e3, merged.getMax() / 1e3));
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IllegalStateException("Failed to write the summary");
+        }
+    }
+}
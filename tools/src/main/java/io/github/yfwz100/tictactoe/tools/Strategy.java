@@ -0,0 +1,144 @@
+package io.github.yfwz100.tictactoe.tools;
+
+import java.util.Random;
+
+import io.github.yfwz100.tictactoe.Agent;
+import io.github.yfwz100.tictactoe.Board;
+import io.github.yfwz100.tictactoe.MonteCarloAgent;
+import io.github.yfwz100.tictactoe.SearchLimits;
+
+/**
+ * The strategy of a player in the headless games.
+ *
+ * @author yfwz100
+ */
+public abstract class Strategy {
+
+    /**
+     * Choose the move.
+     *
+     * @param board  the board, which must not be modified.
+     * @param mark   the mark of the player.
+     * @param random the random source of the game.
+     * @return the choice, or null if there's no empty cell.
+     */
+    public abstract Agent.Choice choose(Board board, Board.Mark mark, Random random);
+
+    /**
+     * Parse the strategy. The supported forms are:
+     * <ul>
+     * <li>{@code search:<depth>}: the fixed-depth search.</li>
+     * <li>{@code anytime:<millis>}: the iterative deepening search within the time budget.</li>
+     * <li>{@code mcts:<iterations>}: the Monte Carlo tree search, one tree per thread.</li>
+     * <li>{@code perfect}: the search as deep as the empty cells.</li>
+     * <li>{@code random}: a random empty cell.</li>
+     * </ul>
+     *
+     * @param spec the specification.
+     * @return the strategy.
+     */
+    public static Strategy parse(final String spec) {
+        final Agent agent = Agent.getInstance();
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "search": {
+                final int depth = Integer.parseInt(parts[1]);
+                return new Strategy() {
+                    @Override
+                    public Agent.Choice choose(Board board, Board.Mark mark, Random random) {
+                        return agent.getBestChoice(board, mark, depth);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return spec;
+                    }
+                };
+            }
+            case "anytime": {
+                final long millis = Long.parseLong(parts[1]);
+                return new Strategy() {
+                    @Override
+                    public Agent.Choice choose(Board board, Board.Mark mark, Random random) {
+                        return agent.getBestChoice(board, mark,
+                                new SearchLimits(0, millis, 0), null);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return spec;
+                    }
+                };
+            }
+            case "mcts": {
+                final int iterations = Integer.parseInt(parts[1]);
+                final ThreadLocal<MonteCarloAgent> agents = new ThreadLocal<MonteCarloAgent>() {
+                    @Override
+                    protected MonteCarloAgent initialValue() {
+                        MonteCarloAgent agent = new MonteCarloAgent();
+                        agent.setIterations(iterations);
+                        return agent;
+                    }
+                };
+                return new Strategy() {
+                    @Override
+                    public Agent.Choice choose(Board board, Board.Mark mark, Random random) {
+                        MonteCarloAgent agent = agents.get();
+                        agent.setSeed(random.nextLong());
+                        return agent.getBestChoice(board, mark);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return spec;
+                    }
+                };
+            }
+            case "perfect":
+                return new Strategy() {
+                    @Override
+                    public Agent.Choice choose(Board board, Board.Mark mark, Random random) {
+                        return agent.getBestChoice(board, mark, board.getEmptyCount());
+                    }
+
+                    @Override
+                    public String toString() {
+                        return spec;
+                    }
+                };
+            case "random":
+                return new Strategy() {
+                    @Override
+                    public Agent.Choice choose(Board board, Board.Mark mark, Random random) {
+                        return randomChoice(board, random);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return spec;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + spec);
+        }
+    }
+
+    /**
+     * Choose a random empty cell.
+     *
+     * @param board  the board.
+     * @param random the random source.
+     * @return the choice, or null if there's no empty cell.
+     */
+    public static Agent.Choice randomChoice(Board board, Random random) {
+        int count = board.getEmptyCount();
+        if (count == 0) {
+            return null;
+        }
+        int[] moves = new int[board.getGeometry().getCells()];
+        board.getEmptyCells(moves);
+        int move = moves[random.nextInt(count)];
+        int width = board.getGeometry().getWidth();
+        return new Agent.Choice(move / width, move % width, 0);
+    }
+}